@@ -0,0 +1,52 @@
+package br.com.victorleitecosta.libraryapi.benchmark;
+
+import br.com.victorleitecosta.libraryapi.LibraryApiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application without the web layer against a private H2 database,
+ * in memory or in a file under target/benchmark, so each benchmark trial
+ * starts from a known state.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return start("jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", properties);
+    }
+
+    /**
+     * Same as {@link #start(String...)} on a file database, so writes pay for
+     * the disk like they would on a real server. Boot only creates the schema
+     * of in-memory databases by itself, hence the explicit ddl-auto.
+     */
+    static ConfigurableApplicationContext startOnFile(String... properties) {
+        List<String> all = new ArrayList<>(Arrays.asList(properties));
+        all.add(0, "spring.jpa.hibernate.ddl-auto=create-drop");
+        return start("jdbc:h2:file:./target/benchmark/" + UUID.randomUUID(), all.toArray(new String[0]));
+    }
+
+    private static ConfigurableApplicationContext start(String url, String... properties) {
+        List<String> all = new ArrayList<>(Arrays.asList(
+                "spring.datasource.url=" + url,
+                "spring.boot.admin.client.enabled=false",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "logging.file.name=",
+                "application.search.rebuild-on-startup=false"));
+        all.addAll(Arrays.asList(properties));
+        return new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(all.toArray(new String[0]))
+                .run();
+    }
+}
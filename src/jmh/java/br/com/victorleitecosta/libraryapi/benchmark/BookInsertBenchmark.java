@@ -0,0 +1,68 @@
+package br.com.victorleitecosta.libraryapi.benchmark;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts per second through {@link BookRepository#saveAll} on a file
+ * database, with JDBC batching disabled (batch size 1) and enabled, for ids
+ * drawn from the pooled book_seq sequence and for identity ids, which
+ * Hibernate never batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+public class BookInsertBenchmark {
+
+    private static final int BOOKS_PER_INVOCATION = 500;
+    private static final String IDENTITY_MAPPING = "benchmark/book-identity-orm.xml";
+
+    @Param({"1", "50"})
+    public int batchSize;
+
+    @Param({"SEQUENCE", "IDENTITY"})
+    public String idStrategy;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository repository;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String batching = "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize;
+        context = "IDENTITY".equals(idStrategy)
+                ? BenchmarkContext.startOnFile(batching, "spring.jpa.mapping-resources=" + IDENTITY_MAPPING)
+                : BenchmarkContext.startOnFile(batching);
+        repository = context.getBean(BookRepository.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void clean() {
+        repository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_INVOCATION)
+    public List<Book> saveAll() {
+        List<Book> books = new ArrayList<>(BOOKS_PER_INVOCATION);
+        for (int i = 0; i < BOOKS_PER_INVOCATION; i++) {
+            long id = sequence++;
+            books.add(Book.builder().title("Title " + id).author("Author " + id).isbn("isbn-" + id).build());
+        }
+        return repository.saveAll(books);
+    }
+}
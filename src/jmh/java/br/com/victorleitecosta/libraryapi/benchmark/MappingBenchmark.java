@@ -0,0 +1,67 @@
+package br.com.victorleitecosta.libraryapi.benchmark;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import br.com.victorleitecosta.libraryapi.api.mapper.BookMapper;
+import br.com.victorleitecosta.libraryapi.api.mapper.BookMapperImpl;
+import br.com.victorleitecosta.libraryapi.api.mapper.LoanMapper;
+import br.com.victorleitecosta.libraryapi.api.mapper.LoanMapperImpl;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping as done by the controllers: the reflective ModelMapper
+ * path they used before against the generated MapStruct mappers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+    private Book book;
+    private Loan loan;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapperImpl();
+        loanMapper = new LoanMapperImpl(bookMapper);
+
+        book = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("102").build();
+        loan = Loan.builder().id(1L).customer("Cláudio").customerEmail("claudio@email.com")
+                .book(book).loanDate(LocalDate.now()).returned(false).build();
+    }
+
+    @Benchmark
+    public BookDTO bookModelMapper() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookMapStruct() {
+        return bookMapper.toDTO(book);
+    }
+
+    @Benchmark
+    public LoanDTO loanModelMapper() {
+        LoanDTO dto = modelMapper.map(loan, LoanDTO.class);
+        dto.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+        return dto;
+    }
+
+    @Benchmark
+    public LoanDTO loanMapStruct() {
+        return loanMapper.toDTO(loan);
+    }
+}
@@ -0,0 +1,62 @@
+package br.com.victorleitecosta.libraryapi.benchmark;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the list endpoint payloads, configured like the
+ * application's message converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Page<BookDTO> books;
+    private Page<LoanDTO> loans;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<BookDTO> bookList = new ArrayList<>(pageSize);
+        List<LoanDTO> loanList = new ArrayList<>(pageSize);
+        for (long i = 0; i < pageSize; i++) {
+            BookDTO book = BookDTO.builder().id(i).title("Title " + i).author("Author " + i).isbn("isbn-" + i).build();
+            bookList.add(book);
+            loanList.add(LoanDTO.builder().id(i).isbn(book.getIsbn()).costumer("Customer " + i)
+                    .email("customer" + i + "@email.com").book(book).build());
+        }
+        PageRequest pageRequest = PageRequest.of(0, pageSize);
+        books = new PageImpl<>(bookList, pageRequest, 10_000);
+        loans = new PageImpl<>(loanList, pageRequest, 10_000);
+    }
+
+    @Benchmark
+    public byte[] bookPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] loanPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(loans);
+    }
+}
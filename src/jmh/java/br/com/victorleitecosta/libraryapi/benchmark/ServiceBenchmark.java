@@ -0,0 +1,97 @@
+package br.com.victorleitecosta.libraryapi.benchmark;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.BookAvailabilityIndex;
+import br.com.victorleitecosta.libraryapi.api.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book search, lookup by isbn and loan creation against a seeded H2 catalog,
+ * with the isbn cache turned on and off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final int CATALOG_SIZE = 20_000;
+    private static final int HOT_ISBNS = 1_000;
+
+    @Param({"caffeine", "none"})
+    public String cache;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private LoanService loanService;
+    private BookAvailabilityIndex availabilityIndex;
+    private JdbcTemplate jdbcTemplate;
+    private List<Book> books;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.cache.type=" + cache);
+        bookService = context.getBean(BookService.class);
+        loanService = context.getBean(LoanService.class);
+        availabilityIndex = context.getBean(BookAvailabilityIndex.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        List<Book> catalog = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            catalog.add(Book.builder().title("Title " + i).author("Author " + (i % 500)).isbn("isbn-" + i).build());
+        }
+        books = context.getBean(BookRepository.class).saveAll(catalog);
+    }
+
+    @Setup(Level.Iteration)
+    public void returnAllBooks() {
+        jdbcTemplate.update("update loan set returned = true, open_book_id = null");
+        availabilityIndex.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> find() {
+        Book filter = Book.builder().title("title 19").build();
+        return bookService.find(filter, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByIsbn() {
+        return bookService.getBookByIsbn("isbn-" + (next++ % HOT_ISBNS));
+    }
+
+    @Benchmark
+    public Loan saveLoan() {
+        Book book = books.get(next++ % CATALOG_SIZE);
+        if (next % CATALOG_SIZE == 0) {
+            returnAllBooks();
+        }
+        return loanService.save(Loan.builder()
+                .book(book)
+                .customer("Cláudio")
+                .customerEmail("claudio@email.com")
+                .loanDate(LocalDate.now())
+                .build());
+    }
+}
@@ -2,6 +2,7 @@ package br.com.victorleitecosta.libraryapi.api;
 
 import br.com.victorleitecosta.libraryapi.api.exception.ApiErrors;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -27,6 +28,12 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(ex);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return new ApiErrors("O registro foi alterado por outra requisição.");
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusEzception(ResponseStatusException ex) {
         return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
@@ -0,0 +1,22 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDTO {
+
+    private Long id;
+    private String isbn;
+    private boolean available;
+
+    public BookAvailabilityDTO(Long id, String isbn) {
+        this.id = id;
+        this.isbn = isbn;
+    }
+}
@@ -0,0 +1,21 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportResultDTO {
+
+    private long imported;
+    private long failed;
+    @Builder.Default
+    private List<BookImportErrorDTO> errors = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLoansDTO {
+
+    private Long bookId;
+    private String isbn;
+    private String title;
+    private Long loans;
+}
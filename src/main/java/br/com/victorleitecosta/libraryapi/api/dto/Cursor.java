@@ -0,0 +1,58 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Opaque "after" token for keyset pagination: the sort key and the id of the
+ * last row of the previous page. A null key is encoded without the separator,
+ * so it stays distinct from an empty one.
+ */
+@Data
+@AllArgsConstructor
+public class Cursor {
+
+    private static final String SEPARATOR = ":";
+
+    private String key;
+    private Long id;
+
+    public String encode() {
+        String raw = key == null ? String.valueOf(id) : id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(UTF_8));
+    }
+
+    /**
+     * The key as a date, or null when the last row had no date.
+     */
+    public LocalDate keyAsDate() {
+        if (key == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(key);
+        } catch (DateTimeParseException ex) {
+            throw new BusinessException("Cursor inválido.");
+        }
+    }
+
+    public static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return new Cursor(null, Long.valueOf(raw));
+            }
+            return new Cursor(raw.substring(separator + 1), Long.valueOf(raw.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new BusinessException("Cursor inválido.");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerActivityDTO {
+
+    private String customer;
+    private Long loans;
+    private Long returned;
+    private LocalDate lastLoanDate;
+}
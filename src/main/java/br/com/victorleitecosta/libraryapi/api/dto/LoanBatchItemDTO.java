@@ -0,0 +1,22 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch checkout or return, in the order of the
+ * request. {@code id} is the loan id, when there is one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanBatchItemDTO {
+
+    private Long id;
+    private String isbn;
+    private LoanBatchStatus status;
+    private String message;
+}
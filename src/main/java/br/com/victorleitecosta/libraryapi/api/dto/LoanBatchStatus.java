@@ -0,0 +1,11 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+public enum LoanBatchStatus {
+    CREATED,
+    RETURNED,
+    BOOK_NOT_FOUND,
+    BOOK_ALREADY_LOANED,
+    INVALID_DUE_DATE,
+    LOAN_NOT_FOUND,
+    ALREADY_RETURNED
+}
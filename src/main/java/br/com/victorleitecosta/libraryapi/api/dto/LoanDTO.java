@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Positive;
 
 @Data
 @Builder
@@ -21,4 +22,10 @@ public class LoanDTO {
     @NotEmpty
     private String email;
     private BookDTO book;
+    @Positive
+    private Integer days;
+
+    public LoanDTO(Long id, String isbn, String costumer, String email, Long bookId, String title, String author) {
+        this(id, isbn, costumer, email, new BookDTO(bookId, title, author, isbn), null);
+    }
 }
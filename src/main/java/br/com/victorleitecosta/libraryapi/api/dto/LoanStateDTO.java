@@ -0,0 +1,14 @@
+package br.com.victorleitecosta.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LoanStateDTO {
+
+    private Long id;
+    private Long bookId;
+    private Boolean returned;
+    private String customer;
+}
@@ -25,6 +25,10 @@ public class ApiErrors {
     public ApiErrors(ResponseStatusException ex) {
         this.errors = asList(ex.getReason());
     }
+
+    public ApiErrors(String message) {
+        this.errors = asList(message);
+    }
     public List<String> getErrors() {
             return errors;
     }
@@ -0,0 +1,17 @@
+package br.com.victorleitecosta.libraryapi.api.mapper;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface BookMapper {
+
+    BookDTO toDTO(Book book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "loansVersion", ignore = true)
+    Book toEntity(BookDTO dto);
+}
@@ -0,0 +1,17 @@
+package br.com.victorleitecosta.libraryapi.api.mapper;
+
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring", uses = BookMapper.class, injectionStrategy = InjectionStrategy.CONSTRUCTOR)
+public interface LoanMapper {
+
+    @Mapping(target = "costumer", source = "customer")
+    @Mapping(target = "email", source = "customerEmail")
+    @Mapping(target = "isbn", source = "book.isbn")
+    @Mapping(target = "days", ignore = true)
+    LoanDTO toDTO(Loan loan);
+}
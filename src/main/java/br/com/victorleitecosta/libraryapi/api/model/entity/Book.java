@@ -13,11 +13,12 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+@Table(indexes = @Index(name = "idx_book_title_id", columnList = "title, id"))
 public class Book {
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -27,6 +28,18 @@ public class Book {
     @Column
     private String isbn;
 
+    @Version
+    @Column
+    private Long version;
+
+    /**
+     * Incremented by bulk updates whenever a loan of the book is created or
+     * changed; never written through the entity.
+     */
+    @Column(name = "loans_version", insertable = false, updatable = false,
+            columnDefinition = "bigint default 0 not null")
+    private Long loansVersion;
+
     @OneToMany(mappedBy = "book")
     private List<Loan> loans;
 }
@@ -0,0 +1,44 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Number of loans of a book on a day, incremented with every loan so the
+ * circulation reports read one row per book and day instead of the loans.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@IdClass(BookDailyLoans.Key.class)
+@Table(name = "book_daily_loans")
+public class BookDailyLoans {
+
+    @Id
+    @Column(name = "loan_date")
+    private LocalDate day;
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column
+    private Long loans;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private LocalDate day;
+        private Long bookId;
+    }
+}
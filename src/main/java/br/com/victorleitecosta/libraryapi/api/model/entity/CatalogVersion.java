@@ -0,0 +1,31 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Single row counting the changes made to the catalog. It is incremented in
+ * the transaction of every book write, so the ETag of the book listings is a
+ * primary key read instead of an aggregate over the book table. The price is
+ * that book writes serialize on this row; see
+ * {@link br.com.victorleitecosta.libraryapi.api.model.repository.CatalogVersionRepository#increment()}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "catalog_version")
+public class CatalogVersion {
+
+    @Id
+    @Column
+    private Long id;
+
+    @Column
+    private Long version;
+}
@@ -0,0 +1,37 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Running totals of the loans of a customer, maintained together with the
+ * loans themselves.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "customer_loans", indexes = {
+        @Index(name = "idx_customer_loans_loans", columnList = "loans")
+})
+public class CustomerLoans {
+
+    @Id
+    @Column
+    private String customer;
+
+    @Column
+    private Long loans;
+
+    @Column
+    private Long returned;
+
+    @Column(name = "last_loan_date")
+    private LocalDate lastLoanDate;
+}
@@ -0,0 +1,47 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked job, saved after every chunk so that a run that
+ * stopped half way can pick up after the last processed key.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "job_checkpoint")
+public class JobCheckpoint {
+
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(name = "run_date")
+    private LocalDate runDate;
+
+    @Column(name = "last_key")
+    private String lastKey;
+
+    /**
+     * Upper bound of the data covered by the last completed run. The next
+     * run only has to look at what came after it.
+     */
+    @Column
+    private LocalDateTime watermark;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private JobStatus status;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
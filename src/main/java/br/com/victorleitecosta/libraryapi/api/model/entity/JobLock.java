@@ -0,0 +1,36 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Lease on a named job shared by all the nodes through the database. The
+ * owner holds the job until {@code lockedUntil}; after that any node may
+ * take it over.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "job_lock")
+public class JobLock {
+
+    @Id
+    @Column
+    private String name;
+
+    @Column
+    private String owner;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+}
@@ -0,0 +1,61 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Slice of the keys of a job run, from {@code lowerKey} (exclusive) up to
+ * {@code upperKey} (inclusive, open ended when null). Nodes claim pending
+ * slices with a lease and keep their progress in {@code lastKey}, so a slice
+ * left by a node that died is taken over where it stopped.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "job_partition",
+        uniqueConstraints = @UniqueConstraint(name = "uk_job_partition", columnNames = {"job_name", "run_date", "lower_key"}),
+        indexes = @Index(name = "idx_job_partition_run", columnList = "job_name, run_date, status"))
+public class JobPartition {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_partition_seq")
+    @SequenceGenerator(name = "job_partition_seq", sequenceName = "job_partition_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(name = "run_date")
+    private LocalDate runDate;
+
+    @Column(name = "lower_key")
+    private String lowerKey;
+
+    @Column(name = "upper_key")
+    private String upperKey;
+
+    @Column(name = "last_key")
+    private String lastKey;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private JobStatus status;
+
+    @Column
+    private String owner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,7 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+public enum JobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED
+}
@@ -7,17 +7,28 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_customer_email", columnList = "customer_email"),
+        @Index(name = "idx_loan_due_at", columnList = "due_at"),
+        @Index(name = "idx_loan_loan_date_id", columnList = "loan_date, id"),
+        @Index(name = "idx_loan_next_reminder_at", columnList = "next_reminder_at"),
+        @Index(name = Loan.OPEN_BOOK_INDEX, columnList = "open_book_id", unique = true)
+})
 public class Loan {
 
+    public static final String OPEN_BOOK_INDEX = "uk_loan_open_book_id";
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -30,10 +41,41 @@ public class Loan {
     @ManyToOne
     private Book book;
 
-    @Column
+    @Column(name = "loan_date")
     private LocalDate loanDate;
 
+    @Column(name = "due_at")
+    private LocalDateTime dueAt;
+
     @Column
     private Boolean returned;
 
+    @Column(name = "last_notified_at")
+    private LocalDate lastNotifiedAt;
+
+    @Column(name = "next_reminder_at")
+    private LocalDate nextReminderAt;
+
+    /**
+     * Node id and a random part of the last call that claimed the reminder.
+     */
+    @Column(name = "reminder_claim", length = 100)
+    private String reminderClaim;
+
+    /**
+     * The book id while the loan is open, null once it is returned. Its unique
+     * index keeps two nodes from lending the same book at the same time.
+     */
+    @Column(name = "open_book_id")
+    private Long openBookId;
+
+    @Version
+    @Column
+    private Long version;
+
+    @PrePersist
+    @PreUpdate
+    void trackOpenBook() {
+        openBookId = Boolean.TRUE.equals(returned) || book == null ? null : book.getId();
+    }
 }
@@ -0,0 +1,71 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A mail waiting to be delivered by the outbox dispatcher. While a worker
+ * is sending it the row is SENDING and {@code nextAttemptAt} holds the end
+ * of the worker's lease, after which another dispatcher may claim it again.
+ * Every claim bumps the version, so a worker that outlived its lease cannot
+ * overwrite the outcome of the new claim.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "outbox_mail", indexes = {
+        @Index(name = "idx_outbox_mail_due", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_mail_claim", columnList = "claim_token")
+})
+public class OutboxMail {
+
+    public static final int BODY_LENGTH = 4000;
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_mail_seq")
+    @SequenceGenerator(name = "outbox_mail_seq", sequenceName = "outbox_mail_seq", allocationSize = 50)
+    private Long id;
+
+    @Column
+    private String recipient;
+
+    @Column
+    private String subject;
+
+    @Column(length = BODY_LENGTH)
+    private String body;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private OutboxStatus status;
+
+    @Column
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claim_token")
+    private String claimToken;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Version
+    @Column
+    private Long version;
+}
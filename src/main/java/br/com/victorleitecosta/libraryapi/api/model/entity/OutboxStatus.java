@@ -0,0 +1,8 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+public enum OutboxStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,26 @@
+package br.com.victorleitecosta.libraryapi.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Stripes of the lock that keeps rollup updates and rebuilds apart. Every
+ * transaction that updates the rollups locks one stripe, a rebuild locks
+ * all of them.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "rollup_gate")
+public class RollupGate {
+
+    @Id
+    @Column
+    private Integer id;
+}
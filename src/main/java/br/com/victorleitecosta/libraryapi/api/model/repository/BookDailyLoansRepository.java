@@ -0,0 +1,52 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.DailyLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.BookDailyLoans;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BookDailyLoansRepository extends JpaRepository<BookDailyLoans, BookDailyLoans.Key> {
+
+    /**
+     * Adds the loans of a book on a day, creating its row on the first one,
+     * in a single statement that runs in the caller's transaction.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = " merge into book_daily_loans r " +
+            " using (select cast(:day as date) as loan_date, cast(:bookId as bigint) as book_id) s " +
+            " on (r.loan_date = s.loan_date and r.book_id = s.book_id) " +
+            " when matched then update set loans = r.loans + :loans " +
+            " when not matched then insert (loan_date, book_id, loans) values (s.loan_date, s.book_id, :loans) ",
+            nativeQuery = true)
+    int addLoans(@Param("day") LocalDate day, @Param("bookId") Long bookId, @Param("loans") long loans);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO(b.id, b.isbn, b.title, sum(r.loans)) " +
+            " from BookDailyLoans r, Book b where b.id = r.bookId and r.day between :from and :to " +
+            " group by b.id, b.isbn, b.title order by sum(r.loans) desc, b.id ")
+    List<BookLoansDTO> findMostBorrowed(@Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.DailyLoansDTO(r.day, sum(r.loans)) " +
+            " from BookDailyLoans r where r.day between :from and :to group by r.day order by r.day ")
+    List<DailyLoansDTO> findDailyLoans(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Transactional
+    @Modifying
+    @Query(value = " delete from book_daily_loans ", nativeQuery = true)
+    int clear();
+
+    @Transactional
+    @Modifying
+    @Query(value = " insert into book_daily_loans (loan_date, book_id, loans) " +
+            " select loan_date, id_book, count(*) from loan where loan_date is not null group by loan_date, id_book ",
+            nativeQuery = true)
+    int backfill();
+}
@@ -1,13 +1,89 @@
 package br.com.victorleitecosta.libraryapi.api.model.repository;
 
+import br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.BOOKS_BY_ISBN;
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.BOOK_COUNTS;
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.ISBN_EXISTS;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+    /**
+     * Only hits are cached: a miss cached on one node would hide for the whole
+     * expiry a book created through another node, whose eviction never
+     * reaches this one.
+     */
+    @Cacheable(cacheNames = ISBN_EXISTS, unless = "!#result")
     boolean existsByIsbn(String isbn);
 
+    @Cacheable(cacheNames = BOOKS_BY_ISBN, unless = "#result == null")
     Optional<Book> findByIsbn(String isbn);
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(" select b from Book b order by b.id ")
+    Stream<Book> streamAll();
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO(b.id, b.isbn) " +
+            " from Book b where b.isbn in :isbns ")
+    List<BookAvailabilityDTO> findAvailabilityByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    @Query(" select b.version from Book b where b.id = :id ")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Both versions only grow, so their sum changes whenever the book or any
+     * of its loans does.
+     */
+    @Query(" select b.version + b.loansVersion from Book b where b.id = :id ")
+    Optional<Long> findLoansVersionById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(" update Book b set b.loansVersion = b.loansVersion + 1 where b.id in :ids ")
+    int incrementLoansVersion(@Param("ids") Collection<Long> ids);
+
+    @Cacheable(BOOK_COUNTS)
+    default long countCached(Example<Book> example) {
+        return count(example);
+    }
+
+    @CacheEvict(cacheNames = {BOOKS_BY_ISBN, ISBN_EXISTS})
+    default void evictByIsbn(String isbn) {
+    }
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query(" select b.isbn from Book b where b.isbn in :isbns ")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Books without a title come first, whatever the database's default
+     * placement of nulls.
+     */
+    @Query(" select b from Book b order by b.title asc nulls first, b.id ")
+    List<Book> findFirstPage(Pageable pageable);
+
+    @Query(" select b from Book b where b.title > :title or (b.title = :title and b.id > :id) " +
+            " order by b.title asc nulls first, b.id ")
+    List<Book> findPageAfter(@Param("title") String title, @Param("id") Long id, Pageable pageable);
+
+    @Query(" select b from Book b where b.title is not null or b.id > :id order by b.title asc nulls first, b.id ")
+    List<Book> findPageAfterUntitled(@Param("id") Long id, Pageable pageable);
 }
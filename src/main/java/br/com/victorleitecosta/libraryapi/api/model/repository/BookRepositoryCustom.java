@@ -0,0 +1,24 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Query by example without the count query of {@code findAll(Example, Pageable)}:
+     * fetches one row past the page to know whether there is a next one.
+     */
+    Slice<Book> findSlice(Example<Book> example, Pageable pageable);
+
+    /**
+     * Same as {@link #findSlice(Example, Pageable)}, but selecting only the
+     * given attributes of the book, keyed by attribute name.
+     */
+    Slice<Map<String, Object>> findSlice(Example<Book> example, List<String> attributes, Pageable pageable);
+}
@@ -0,0 +1,35 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.CatalogVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface CatalogVersionRepository extends JpaRepository<CatalogVersion, Long> {
+
+    @Query(" select c.version from CatalogVersion c where c.id = 1 ")
+    Optional<Long> findVersion();
+
+    /**
+     * Seeds the counter row if it is missing, without touching an existing one.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = " merge into catalog_version c using (select 1 as id) s on (c.id = s.id) " +
+            " when not matched then insert (id, version) values (1, 0) ", nativeQuery = true)
+    int create();
+
+    /**
+     * Every book write updates this same row, so concurrent writes serialize
+     * on its lock until their transactions end. It is a cheap update, which
+     * is fine at the catalog's write rate, but bulk imports should stay in
+     * few transactions rather than many small ones.
+     */
+    @Transactional
+    @Modifying
+    @Query(" update CatalogVersion c set c.version = c.version + 1 where c.id = 1 ")
+    int increment();
+}
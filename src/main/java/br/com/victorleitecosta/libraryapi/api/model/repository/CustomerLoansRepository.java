@@ -0,0 +1,58 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.CustomerLoans;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface CustomerLoansRepository extends JpaRepository<CustomerLoans, String> {
+
+    /**
+     * Adds the loans of a customer, creating its row on the first one, in a
+     * single statement that runs in the caller's transaction.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = " merge into customer_loans c using (select cast(:customer as varchar) as customer) s " +
+            " on (c.customer = s.customer) " +
+            " when matched then update set loans = c.loans + :loans, last_loan_date = case " +
+            "   when c.last_loan_date is null or c.last_loan_date < :day then :day else c.last_loan_date end " +
+            " when not matched then insert (customer, loans, returned, last_loan_date) " +
+            "   values (s.customer, :loans, 0, :day) ",
+            nativeQuery = true)
+    int addLoans(@Param("customer") String customer, @Param("loans") long loans, @Param("day") LocalDate day);
+
+    @Transactional
+    @Modifying
+    @Query(" update CustomerLoans c set c.returned = c.returned + :returned where c.customer = :customer ")
+    int addReturns(@Param("customer") String customer, @Param("returned") long returned);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO(" +
+            " c.customer, c.loans, c.returned, c.lastLoanDate) from CustomerLoans c order by c.loans desc, c.customer ")
+    Slice<CustomerActivityDTO> findMostActive(Pageable pageable);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO(" +
+            " c.customer, c.loans, c.returned, c.lastLoanDate) from CustomerLoans c where c.customer = :customer ")
+    Optional<CustomerActivityDTO> findActivity(@Param("customer") String customer);
+
+    @Transactional
+    @Modifying
+    @Query(value = " delete from customer_loans ", nativeQuery = true)
+    int clear();
+
+    @Transactional
+    @Modifying
+    @Query(value = " insert into customer_loans (customer, loans, returned, last_loan_date) " +
+            " select customer, count(*), sum(case when returned = true then 1 else 0 end), max(loan_date) " +
+            " from loan where customer is not null and loan_date is not null group by customer ",
+            nativeQuery = true)
+    int backfill();
+}
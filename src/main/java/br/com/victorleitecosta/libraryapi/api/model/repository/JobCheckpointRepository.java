@@ -0,0 +1,18 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Read-write even for lookups: the checkpoint decides where an interrupted
+ * run resumes, so it is always read from the primary, never from a replica.
+ */
+@Transactional
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+    @Override
+    Optional<JobCheckpoint> findById(String name);
+}
@@ -0,0 +1,51 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Always on the primary, like the leases it keeps.
+ */
+@Transactional
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    @Override
+    boolean existsById(String name);
+
+    @Transactional
+    @Modifying
+    @Query(value = " insert into job_lock (name, owner, locked_at, locked_until) values (:name, :owner, :now, :until) ",
+            nativeQuery = true)
+    int create(@Param("name") String name,
+               @Param("owner") String owner,
+               @Param("now") LocalDateTime now,
+               @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query(" update JobLock l set l.owner = :owner, l.lockedAt = :now, l.lockedUntil = :until " +
+            " where l.name = :name and (l.lockedUntil <= :now or l.owner = :owner) ")
+    int acquire(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("now") LocalDateTime now,
+                @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query(" update JobLock l set l.lockedUntil = :until where l.name = :name and l.owner = :owner and l.lockedUntil > :now ")
+    int renew(@Param("name") String name,
+              @Param("owner") String owner,
+              @Param("now") LocalDateTime now,
+              @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query(" update JobLock l set l.lockedUntil = :now where l.name = :name and l.owner = :owner ")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
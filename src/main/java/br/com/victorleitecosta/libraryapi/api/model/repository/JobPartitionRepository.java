@@ -0,0 +1,68 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobPartition;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-write even for lookups, so partitions are listed and read back from
+ * the primary, where other nodes claim them.
+ */
+@Transactional
+public interface JobPartitionRepository extends JpaRepository<JobPartition, Long> {
+
+    @Override
+    Optional<JobPartition> findById(Long id);
+
+    @Query(" select p.id from JobPartition p " +
+            " where p.jobName = :jobName and p.runDate = :runDate " +
+            " and (p.status = 'PENDING' or (p.status = 'RUNNING' and p.leaseUntil <= :now)) " +
+            " order by p.id ")
+    List<Long> findClaimableIds(@Param("jobName") String jobName,
+                                @Param("runDate") LocalDate runDate,
+                                @Param("now") LocalDateTime now,
+                                Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query(" update JobPartition p set p.status = 'RUNNING', p.owner = :owner, p.leaseUntil = :leaseUntil, p.updatedAt = :now " +
+            " where p.id = :id and (p.status = 'PENDING' or (p.status = 'RUNNING' and p.leaseUntil <= :now)) ")
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query(" update JobPartition p set p.lastKey = :lastKey, p.status = :status, p.leaseUntil = :leaseUntil, p.updatedAt = :now " +
+            " where p.id = :id and p.owner = :owner and p.status = 'RUNNING' ")
+    int saveProgress(@Param("id") Long id,
+                     @Param("owner") String owner,
+                     @Param("lastKey") String lastKey,
+                     @Param("status") JobStatus status,
+                     @Param("now") LocalDateTime now,
+                     @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query(" update JobPartition p set p.leaseUntil = :leaseUntil, p.updatedAt = :now " +
+            " where p.id = :id and p.owner = :owner and p.status = 'RUNNING' ")
+    int renew(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    boolean existsByJobNameAndRunDate(String jobName, LocalDate runDate);
+
+    long countByJobNameAndRunDateAndStatusNot(String jobName, LocalDate runDate, JobStatus status);
+}
@@ -1,23 +1,45 @@
 package br.com.victorleitecosta.libraryapi.api.model.repository;
 
+import br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDueDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanStateDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.LOAN_COUNTS;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
     boolean existsByBookAndReturnedIsNullOrReturnedIsFalse(@Param("book") Book book);
 
+    @Query(" select l.openBookId from Loan l where l.openBookId in :bookIds ")
+    List<Long> findOpenBookIds(@Param("bookIds") Collection<Long> bookIds);
+
     Page<Loan> findByBookIsbnOrCustomer(
             @Param("isbn") String isbn,
             @Param("customer") String customer,
@@ -25,6 +47,160 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
 
     Page<Loan> findByBook(Book book, Pageable pageable);
 
+    @Query(value = " select new br.com.victorleitecosta.libraryapi.api.dto.LoanDTO(" +
+            " l.id, b.isbn, l.customer, l.customerEmail, b.id, b.title, b.author) " +
+            " from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer ",
+            countQuery = " select count(l) from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer ")
+    Page<LoanDTO> findDetailsByBookIsbnOrCustomer(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            Pageable pageable);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LoanDTO(" +
+            " l.id, b.isbn, l.customer, l.customerEmail, b.id, b.title, b.author) " +
+            " from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer ")
+    Slice<LoanDTO> findDetailsSliceByBookIsbnOrCustomer(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            Pageable pageable);
+
+    @Cacheable(LOAN_COUNTS)
+    @Query(" select count(l) from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer ")
+    long countCachedByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+    @Query(value = " select new br.com.victorleitecosta.libraryapi.api.dto.LoanDTO(" +
+            " l.id, b.isbn, l.customer, l.customerEmail, b.id, b.title, b.author) " +
+            " from Loan l join l.book b where b.id = :bookId ",
+            countQuery = " select count(l) from Loan l where l.book.id = :bookId ")
+    Page<LoanDTO> findDetailsByBookId(@Param("bookId") Long bookId, Pageable pageable);
+
+    /**
+     * Loans without a loan date come first, whatever the database's default
+     * placement of nulls.
+     */
+    @Query(" select l from Loan l join l.book b " +
+            " where (:isbn is null and :customer is null) or b.isbn = :isbn or l.customer = :customer " +
+            " order by l.loanDate asc nulls first, l.id ")
+    List<Loan> findFirstPage(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            Pageable pageable);
+
+    @Query(" select l from Loan l join l.book b " +
+            " where ((:isbn is null and :customer is null) or b.isbn = :isbn or l.customer = :customer) " +
+            " and (l.loanDate > :loanDate or (l.loanDate = :loanDate and l.id > :id)) " +
+            " order by l.loanDate asc nulls first, l.id ")
+    List<Loan> findPageAfter(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            @Param("loanDate") LocalDate loanDate,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    @Query(" select l from Loan l join l.book b " +
+            " where ((:isbn is null and :customer is null) or b.isbn = :isbn or l.customer = :customer) " +
+            " and (l.loanDate is not null or l.id > :id) " +
+            " order by l.loanDate asc nulls first, l.id ")
+    List<Loan> findPageAfterUndated(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query(" update Loan l set l.version = l.version + 1, l.lastNotifiedAt = :notifiedAt, " +
+            " l.nextReminderAt = :nextReminderAt where l.id in :ids ")
+    int markNotified(
+            @Param("ids") Collection<Long> ids,
+            @Param("notifiedAt") LocalDate notifiedAt,
+            @Param("nextReminderAt") LocalDate nextReminderAt);
+
+    /**
+     * Marks the first notice of the loans as sent, skipping the ones another
+     * node already claimed, and tags them with the claim so that
+     * {@link #findClaimedLoans} reads back exactly these. The claimed rows
+     * stay locked until the caller commits, so a concurrent claim waits and
+     * then skips them.
+     */
+    @Transactional
+    @Modifying
+    @Query(" update Loan l set l.version = l.version + 1, l.lastNotifiedAt = :notifiedAt, l.nextReminderAt = :nextReminderAt, " +
+            " l.reminderClaim = :claim " +
+            " where l.id in :ids and l.customerEmail is not null and l.nextReminderAt is null " +
+            " and (l.returned is null or l.returned = false) ")
+    int claimFirstNotices(
+            @Param("ids") Collection<Long> ids,
+            @Param("claim") String claim,
+            @Param("notifiedAt") LocalDate notifiedAt,
+            @Param("nextReminderAt") LocalDate nextReminderAt);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LoanStateDTO(l.id, l.book.id, l.returned, l.customer) " +
+            " from Loan l where l.id in :ids ")
+    List<LoanStateDTO> findStatesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Locks the loans until the end of the transaction, so a concurrent
+     * return of the same loans waits and then sees them returned.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LoanStateDTO(l.id, l.book.id, l.returned, l.customer) " +
+            " from Loan l where l.id in :ids ")
+    List<LoanStateDTO> findStatesForUpdateByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(" update Loan l set l.version = l.version + 1, l.returned = true, l.nextReminderAt = null, l.openBookId = null " +
+            " where l.id in :ids and (l.returned is null or l.returned = false) ")
+    int markReturned(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Read-write so that it is served by the primary: the availability
+     * index is built from it and must not miss loans still replicating.
+     */
+    @Transactional
+    @Query(" select distinct l.book.id from Loan l where l.returned is null or l.returned = false ")
+    List<Long> findLoanedBookIds();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(" select l from Loan l join fetch l.book order by l.id ")
+    Stream<Loan> streamAll();
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO(l.customerEmail, max(l.customer), count(l)) " +
+            " from Loan l " +
+            " where l.customerEmail > :lastEmail and (:upperEmail is null or l.customerEmail <= :upperEmail) " +
+            " and (l.returned is null or l.returned = false) " +
+            " and ((l.nextReminderAt is null and l.dueAt > :watermark and l.dueAt <= :dueBefore) " +
+            "   or l.nextReminderAt <= :reminderDate) " +
+            " group by l.customerEmail " +
+            " order by l.customerEmail ")
+    List<LateCustomerDTO> findCustomersToNotifyAfter(
+            @Param("watermark") LocalDateTime watermark,
+            @Param("dueBefore") LocalDateTime dueBefore,
+            @Param("reminderDate") LocalDate reminderDate,
+            @Param("lastEmail") String lastEmail,
+            @Param("upperEmail") String upperEmail,
+            Pageable pageable);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO(l.id, l.customer, l.customerEmail, b.isbn, b.title) " +
+            " from Loan l join l.book b " +
+            " where l.customerEmail in :emails and l.dueAt <= :dueBefore and (l.returned is null or l.returned = false) " +
+            " order by l.customerEmail, l.dueAt, l.id ")
+    List<LateLoanDTO> findLateLoansByCustomerEmails(
+            @Param("dueBefore") LocalDateTime dueBefore,
+            @Param("emails") Collection<String> emails);
+
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO(l.id, l.customer, l.customerEmail, b.isbn, b.title) " +
+            " from Loan l join l.book b " +
+            " where l.id in :ids and l.reminderClaim = :claim " +
+            " order by l.customerEmail, l.dueAt, l.id ")
+    List<LateLoanDTO> findClaimedLoans(@Param("ids") Collection<Long> ids, @Param("claim") String claim);
+
+    @Transactional
+    @Query(" select new br.com.victorleitecosta.libraryapi.api.dto.LoanDueDTO(l.id, l.dueAt) from Loan l " +
+            " where l.dueAt is not null and l.nextReminderAt is null and (l.returned is null or l.returned = false) ")
+    List<LoanDueDTO> findPendingDueDates();
+
     @Query(" select l from Loan l where l.loanDate <= :threeDaysAgo ")
     List<Loan> findByLoanDateLessThanAndReturnedIsNullOrReturnedIsFalse(@Param("threeDaysAgo") LocalDate threeDaysAgo);
 }
@@ -0,0 +1,43 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lookups are read-write too: a node reads back the rows it has just
+ * claimed, which a lagging replica would not return yet.
+ */
+public interface OutboxMailRepository extends JpaRepository<OutboxMail, Long> {
+
+    @Transactional
+    @Query(" select o.id from OutboxMail o " +
+            " where o.status in ('PENDING', 'SENDING') and o.nextAttemptAt <= :now " +
+            " order by o.nextAttemptAt, o.id ")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query(" update OutboxMail o set o.version = o.version + 1, o.status = 'SENDING', o.claimToken = :token, " +
+            " o.nextAttemptAt = :leaseUntil " +
+            " where o.id in :ids and o.status in ('PENDING', 'SENDING') and o.nextAttemptAt <= :now ")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    List<OutboxMail> findByClaimToken(String claimToken);
+
+    @Transactional
+    long countByStatus(OutboxStatus status);
+}
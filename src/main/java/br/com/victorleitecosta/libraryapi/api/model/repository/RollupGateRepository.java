@@ -0,0 +1,28 @@
+package br.com.victorleitecosta.libraryapi.api.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.RollupGate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+public interface RollupGateRepository extends JpaRepository<RollupGate, Integer> {
+
+    @Transactional
+    @Modifying
+    @Query(value = " merge into rollup_gate key (id) values (:id) ", nativeQuery = true)
+    int create(@Param("id") int id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select g.id from RollupGate g where g.id = :id ")
+    List<Integer> lockStripe(@Param("id") int id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select g.id from RollupGate g order by g.id ")
+    List<Integer> lockAll();
+}
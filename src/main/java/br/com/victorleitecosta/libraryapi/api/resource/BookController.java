@@ -1,29 +1,53 @@
 package br.com.victorleitecosta.libraryapi.api.resource;
 
+import br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportResultDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
+import br.com.victorleitecosta.libraryapi.api.dto.CursorPageDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import br.com.victorleitecosta.libraryapi.api.mapper.BookMapper;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
-import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.service.BookField;
+import br.com.victorleitecosta.libraryapi.api.service.BookImportService;
 import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.CountMode;
+import br.com.victorleitecosta.libraryapi.api.service.DataFormat;
+import br.com.victorleitecosta.libraryapi.api.service.ExportService;
 import br.com.victorleitecosta.libraryapi.api.service.LoanService;
+import br.com.victorleitecosta.libraryapi.exception.BusinessException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @RestController
@@ -33,28 +57,72 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 @Slf4j
 public class BookController {
 
-    private final ModelMapper modelMapper;
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    private static final int MAX_AVAILABILITY_ISBNS = 1000;
+
+    private final BookMapper bookMapper;
     private final BookService service;
     private final LoanService loanService;
+    private final BookImportService importService;
+    private final ExportService exportService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Creates a book")
     public BookDTO create(@RequestBody @Valid BookDTO dto) {
         log.info(" creating a book for isbn: {} ", dto.getIsbn());
-        Book entity = modelMapper.map(dto, Book.class);
+        Book entity = bookMapper.toEntity(dto);
 
         entity = service.save(entity);
 
-        return modelMapper.map(entity, BookDTO.class);
+        return bookMapper.toDTO(entity);
+    }
+
+    @PostMapping(value = "bulk", consumes = {DataFormat.NDJSON_VALUE, DataFormat.CSV_VALUE})
+    @ApiOperation("Imports books in bulk from a NDJSON or CSV stream")
+    public BookImportResultDTO importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                           HttpServletRequest request) throws IOException {
+        log.info(" importing books from a {} stream ", contentType);
+        Charset charset = contentType.getCharset() == null ? UTF_8 : contentType.getCharset();
+        DataFormat format = DataFormat.of(contentType);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset))) {
+            return importService.importBooks(reader, format);
+        }
+    }
+
+    @GetMapping("export")
+    @ApiOperation("Exports the whole catalog as a NDJSON or CSV stream")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        DataFormat dataFormat = DataFormat.of(format);
+        StreamingResponseBody body = output -> exportService.exportBooks(dataFormat, output);
+        return ResponseEntity.ok()
+                .contentType(new MediaType(dataFormat.getMediaType(), UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("books." + dataFormat.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    @GetMapping("availability")
+    @ApiOperation("Checks which of the given books are available for loan")
+    public List<BookAvailabilityDTO> availability(@RequestParam List<String> isbns) {
+        if (isbns.size() > MAX_AVAILABILITY_ISBNS) {
+            throw new BusinessException("Informe no máximo " + MAX_AVAILABILITY_ISBNS + " isbns.");
+        }
+        return service.getAvailability(isbns);
     }
 
     @GetMapping("{id}")
     @ApiOperation("Obtains a book details by id")
-    public BookDTO get(@PathVariable Long id) {
+    public BookDTO get(@PathVariable Long id, WebRequest request) {
         log.info(" obtaining details for book id: {} ", id);
+        Long version = service.getVersion(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND));
+        if (request.checkNotModified(ETags.of(version))) {
+            return null;
+        }
         return service.getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
+                .map(bookMapper::toDTO)
                 .orElseThrow(() -> new ResponseStatusException(NOT_FOUND));
     }
 
@@ -72,43 +140,122 @@ public class BookController {
     @PutMapping("{id}")
     @ResponseStatus(HttpStatus.OK)
     @ApiOperation("Updates a book")
-    public BookDTO update(@PathVariable Long id, BookDTO dto) {
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info(" updating book of id: {} ", id);
-        return service.getById(id).map(book -> {
-            book.setTitle(dto.getTitle());
-            book.setAuthor(dto.getAuthor());
-            book = service.update(book);
-            return modelMapper.map(book, BookDTO.class);
-
-        }).orElseThrow(() -> new ResponseStatusException(NOT_FOUND));
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND));
+        if (ifMatch != null && !ETags.matches(ifMatch, ETags.of(book.getVersion()))) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "O livro foi alterado por outra requisição.");
+        }
+        book.setTitle(dto.getTitle());
+        book.setAuthor(dto.getAuthor());
+        book = service.update(book);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(book.getVersion()))
+                .body(bookMapper.toDTO(book));
     }
 
     @GetMapping
     @ApiOperation("Finds a book")
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
+    public Page<BookDTO> find(BookDTO dto, @RequestParam(required = false) String q,
+                              @RequestParam(defaultValue = "exact") String count,
+                              Pageable pageRequest, WebRequest request) {
+        CountMode countMode = CountMode.of(count);
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        Page<Book> result;
+        if (q != null && !q.isBlank()) {
+            result = service.search(q, pageRequest);
+        } else {
+            Book filter = bookMapper.toEntity(dto);
+            result = countMode == CountMode.APPROXIMATE
+                    ? service.findApproximate(filter, pageRequest)
+                    : service.find(filter, pageRequest);
+        }
         List<BookDTO> list = result.getContent().stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .map(bookMapper::toDTO)
                 .collect(Collectors.toList());
         return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
     }
 
+    @GetMapping(params = "slice=true")
+    @ApiOperation("Finds a book without counting the total, telling only whether there is a next page")
+    public Slice<BookDTO> findSlice(BookDTO dto, @RequestParam(required = false) String q,
+                                    Pageable pageRequest, WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        Slice<Book> result = q != null && !q.isBlank()
+                ? service.search(q, pageRequest)
+                : service.findSlice(bookMapper.toEntity(dto), pageRequest);
+        return result.map(bookMapper::toDTO);
+    }
+
+    @GetMapping(params = "fields")
+    @ApiOperation("Finds a book selecting only the given fields, e.g. fields=id,title,isbn")
+    public Page<Map<String, Object>> findFields(BookDTO dto, @RequestParam String fields,
+                                                @RequestParam(required = false) String q,
+                                                @RequestParam(defaultValue = "exact") String count,
+                                                Pageable pageRequest, WebRequest request) {
+        Set<BookField> selected = BookField.of(fields);
+        CountMode countMode = CountMode.of(count);
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        if (q != null && !q.isBlank()) {
+            return service.search(q, pageRequest).map(book -> BookField.project(selected, book));
+        }
+        Book filter = bookMapper.toEntity(dto);
+        return countMode == CountMode.APPROXIMATE
+                ? service.findApproximate(filter, selected, pageRequest)
+                : service.find(filter, selected, pageRequest);
+    }
+
+    @GetMapping(params = {"fields", "slice=true"})
+    @ApiOperation("Finds a book selecting only the given fields, without counting the total")
+    public Slice<Map<String, Object>> findFieldsSlice(BookDTO dto, @RequestParam String fields,
+                                                      @RequestParam(required = false) String q,
+                                                      Pageable pageRequest, WebRequest request) {
+        Set<BookField> selected = BookField.of(fields);
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        if (q != null && !q.isBlank()) {
+            return service.search(q, pageRequest).map(book -> BookField.project(selected, book));
+        }
+        return service.findSlice(bookMapper.toEntity(dto), selected, pageRequest);
+    }
+
+    private boolean catalogNotModified(WebRequest request) {
+        return request.checkNotModified(ETags.of(service.getCatalogVersion()));
+    }
+
+    @GetMapping("cursor")
+    @ApiOperation("Finds books ordered by title using keyset pagination")
+    public CursorPageDTO<BookDTO> findByCursor(@RequestParam(required = false) String after,
+                                               @RequestParam(defaultValue = "20") int size) {
+        Cursor cursor = after == null || after.isEmpty() ? null : Cursor.decode(after);
+        Slice<Book> result = service.findAfter(cursor, Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE)));
+        List<BookDTO> list = result.getContent().stream()
+                .map(bookMapper::toDTO)
+                .collect(Collectors.toList());
+        Book last = result.hasContent() ? result.getContent().get(result.getNumberOfElements() - 1) : null;
+        return CursorPageDTO.<BookDTO>builder()
+                .content(list)
+                .size(list.size())
+                .hasNext(result.hasNext())
+                .next(result.hasNext() ? new Cursor(last.getTitle(), last.getId()).encode() : null)
+                .build();
+    }
+
     @GetMapping("{id}/loans")
     @ApiOperation("Loans a book")
-    public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
-        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND));
-        Page<Loan> result = loanService.getLoansByBook(book, pageable);
-        List<LoanDTO> list = result.getContent()
-                .stream()
-                .map(loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                })
-                .collect(Collectors.toList());
-        return new PageImpl<LoanDTO>(list, pageable, result.getTotalElements());
+    public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable, WebRequest request) {
+        Long version = service.getLoansVersion(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND));
+        if (request.checkNotModified(ETags.of(version))) {
+            return null;
+        }
+        return loanService.getLoanDetailsByBook(id, pageable);
     }
 }
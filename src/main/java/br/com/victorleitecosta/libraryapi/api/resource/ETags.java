@@ -0,0 +1,26 @@
+package br.com.victorleitecosta.libraryapi.api.resource;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Strong entity tags built from entity versions, checked before anything is
+ * loaded so a conditional request costs a single version query.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(Long... versions) {
+        return Arrays.stream(versions)
+                .map(Long::toHexString)
+                .collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    static boolean matches(String ifMatch, String etag) {
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(etag));
+    }
+}
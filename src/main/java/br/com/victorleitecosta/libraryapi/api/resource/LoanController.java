@@ -1,25 +1,39 @@
 package br.com.victorleitecosta.libraryapi.api.resource;
 
-import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
+import br.com.victorleitecosta.libraryapi.api.dto.CursorPageDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchItemDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanFilterDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.ReturnedLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.ReturnedLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.mapper.LoanMapper;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
 import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.CountMode;
+import br.com.victorleitecosta.libraryapi.api.service.DataFormat;
+import br.com.victorleitecosta.libraryapi.api.service.ExportService;
 import br.com.victorleitecosta.libraryapi.api.service.LoanService;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.LocalDate.now;
 
 @RestController
@@ -27,9 +41,13 @@ import static java.time.LocalDate.now;
 @RequiredArgsConstructor
 public class LoanController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final LoanService service;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
+    private final ExportService exportService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -38,7 +56,9 @@ public class LoanController {
         Loan entity = Loan.builder()
                 .book(book)
                 .customer(dto.getCostumer())
+                .customerEmail(dto.getEmail())
                 .loanDate(now())
+                .dueAt(dto.getDays() == null ? null : LocalDateTime.now().plusDays(dto.getDays()))
                 .build();
 
         entity = service.save(entity);
@@ -46,6 +66,26 @@ public class LoanController {
         return entity.getId();
     }
 
+    @PostMapping("batch")
+    public List<LoanBatchItemDTO> createBatch(@RequestBody List<LoanDTO> dtos) {
+        checkBatchSize(dtos.size());
+        return service.saveAll(dtos);
+    }
+
+    @PatchMapping("returns")
+    public List<LoanBatchItemDTO> returnBooks(@RequestBody ReturnedLoansDTO dto) {
+        List<Long> ids = dto.getIds() == null ? Collections.emptyList() : dto.getIds();
+        checkBatchSize(ids.size());
+        return service.returnAll(ids);
+    }
+
+    private static void checkBatchSize(int size) {
+        if (size == 0 || size > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "O lote deve ter entre 1 e " + MAX_BATCH_SIZE + " itens.");
+        }
+    }
+
     @PatchMapping("{id}")
     public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
         Loan loan = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
@@ -55,18 +95,51 @@ public class LoanController {
     }
 
     @GetMapping
-    public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageable) {
-        Page<Loan> result = service.find(dto, pageable);
+    public Page<LoanDTO> find(LoanFilterDTO dto, @RequestParam(defaultValue = "exact") String count, Pageable pageable) {
+        return CountMode.of(count) == CountMode.APPROXIMATE
+                ? service.findDetailsApproximate(dto, pageable)
+                : service.findDetails(dto, pageable);
+    }
+
+    @GetMapping(params = "slice=true")
+    public Slice<LoanDTO> findSlice(LoanFilterDTO dto, Pageable pageable) {
+        return service.findDetailsSlice(dto, pageable);
+    }
+
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        DataFormat dataFormat = DataFormat.of(format);
+        StreamingResponseBody body = output -> exportService.exportLoans(dataFormat, output);
+        return ResponseEntity.ok()
+                .contentType(new MediaType(dataFormat.getMediaType(), UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("loans." + dataFormat.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    @GetMapping("cursor")
+    public CursorPageDTO<LoanDTO> findByCursor(LoanFilterDTO dto,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(defaultValue = "20") int size) {
+        Cursor cursor = after == null || after.isEmpty() ? null : Cursor.decode(after);
+        Slice<Loan> result = service.findAfter(dto, cursor, Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE)));
         List<LoanDTO> loans = result.getContent()
                 .stream()
-                .map(entity -> {
-                        Book book = entity.getBook();
-                        modelMapper.map(book, BookDTO.class);
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
-        return new PageImpl<LoanDTO>(loans, pageable, result.getTotalElements());
+                .map(loanMapper::toDTO)
+                .collect(Collectors.toList());
+        Loan last = result.hasContent() ? result.getContent().get(result.getNumberOfElements() - 1) : null;
+        return CursorPageDTO.<LoanDTO>builder()
+                .content(loans)
+                .size(loans.size())
+                .hasNext(result.hasNext())
+                .next(result.hasNext() ? nextCursor(last) : null)
+                .build();
+    }
+
+    private static String nextCursor(Loan last) {
+        String key = last.getLoanDate() == null ? null : last.getLoanDate().toString();
+        return new Cursor(key, last.getId()).encode();
     }
 }
@@ -0,0 +1,73 @@
+package br.com.victorleitecosta.libraryapi.api.resource;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.DailyLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.service.ReportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static java.time.LocalDate.now;
+
+/**
+ * Circulation reports, served from the rollups kept by the loan service.
+ * Periods default to the last 30 days. Rebuilding the rollups is an admin
+ * operation, see {@code CirculationRollupsEndpoint}.
+ */
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+public class ReportController {
+
+    private static final int DEFAULT_PERIOD_DAYS = 30;
+    private static final int MAX_PERIOD_DAYS = 366;
+    private static final int MAX_RANKING_SIZE = 100;
+
+    private final ReportService service;
+
+    @GetMapping("books/most-borrowed")
+    public List<BookLoansDTO> mostBorrowed(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                           @RequestParam(defaultValue = "10") int size) {
+        LocalDate end = to == null ? now() : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_PERIOD_DAYS - 1) : from;
+        checkPeriod(start, end);
+        return service.getMostBorrowed(start, end, Math.max(1, Math.min(size, MAX_RANKING_SIZE)));
+    }
+
+    @GetMapping("loans/daily")
+    public List<DailyLoansDTO> dailyLoans(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to == null ? now() : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_PERIOD_DAYS - 1) : from;
+        checkPeriod(start, end);
+        return service.getDailyLoans(start, end);
+    }
+
+    @GetMapping("customers")
+    public Slice<CustomerActivityDTO> mostActiveCustomers(Pageable pageable) {
+        return service.getMostActiveCustomers(pageable);
+    }
+
+    @GetMapping("customers/{customer}")
+    public CustomerActivityDTO customerActivity(@PathVariable String customer) {
+        return service.getCustomerActivity(customer)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    private static void checkPeriod(LocalDate from, LocalDate to) {
+        if (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= MAX_PERIOD_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "O período deve ter entre 1 e " + MAX_PERIOD_DAYS + " dias.");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap of the books that are currently out on loan, keyed by book id.
+ * Loaded from the open loans on startup and kept up to date by the loan
+ * service, so availability checks never touch the loan history. A book is
+ * reserved when lent and given back if that transaction rolls back; returns
+ * free it only after they commit. It only sees the loans of this node, the
+ * unique index on open loans guards the others.
+ */
+@Service
+@Slf4j
+public class BookAvailabilityIndex {
+
+    private final LoanRepository repository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private BitSet loaned = new BitSet();
+
+    public BookAvailabilityIndex(LoanRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Reads the open loans while holding the write lock: a loan marked or
+     * returned during the read waits for the new bitmap instead of being
+     * applied to the old one and lost in the swap.
+     */
+    @PostConstruct
+    public void rebuild() {
+        BitSet newLoaned = new BitSet();
+        lock.writeLock().lock();
+        try {
+            repository.findLoanedBookIds().forEach(bookId -> newLoaned.set(bit(bookId)));
+            loaned = newLoaned;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info(" availability index rebuilt with {} loaned books ", newLoaned.cardinality());
+    }
+
+    public boolean isLoaned(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return loaned.get(bit(bookId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the book as loaned, returning false when it already was.
+     */
+    public boolean tryMarkLoaned(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            int bit = bit(bookId);
+            if (loaned.get(bit)) {
+                return false;
+            }
+            loaned.set(bit);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the books as loaned under a single lock, returning the ids that
+     * were free. A book repeated in the collection is only marked once.
+     */
+    public Set<Long> tryMarkLoaned(Collection<Long> bookIds) {
+        Set<Long> marked = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            for (Long bookId : bookIds) {
+                int bit = bit(bookId);
+                if (!loaned.get(bit)) {
+                    loaned.set(bit);
+                    marked.add(bookId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return marked;
+    }
+
+    public void markLoaned(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            loaned.set(bit(bookId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void markReturned(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            loaned.clear(bit(bookId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int bit(Long bookId) {
+        if (bookId == null) {
+            throw new IllegalArgumentException("O id do livro não pode ser nulo.");
+        }
+        return Math.toIntExact(bookId);
+    }
+}
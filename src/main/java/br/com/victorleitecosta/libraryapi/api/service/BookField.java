@@ -0,0 +1,57 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Fields of a book that a listing can be narrowed to with {@code fields=}.
+ * The name is also the attribute of {@link Book} that is selected.
+ */
+public enum BookField {
+    ID("id", Book::getId),
+    TITLE("title", Book::getTitle),
+    AUTHOR("author", Book::getAuthor),
+    ISBN("isbn", Book::getIsbn);
+
+    private final String attribute;
+    private final Function<Book, Object> getter;
+
+    BookField(String attribute, Function<Book, Object> getter) {
+        this.attribute = attribute;
+        this.getter = getter;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public static Set<BookField> of(String fields) {
+        Set<BookField> result = EnumSet.noneOf(BookField.class);
+        for (String name : fields.split(",")) {
+            String attribute = name.trim();
+            result.add(Arrays.stream(values())
+                    .filter(field -> field.attribute.equalsIgnoreCase(attribute))
+                    .findFirst()
+                    .orElseThrow(() -> new BusinessException("Campo inválido: " + attribute + ".")));
+        }
+        return result;
+    }
+
+    /**
+     * The selected fields of a book that was loaded whole, as the search
+     * index returns them.
+     */
+    public static Map<String, Object> project(Collection<BookField> fields, Book book) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        fields.forEach(field -> values.put(field.attribute, field.getter.apply(book)));
+        return values;
+    }
+}
@@ -0,0 +1,11 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportResultDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+public interface BookImportService {
+
+    BookImportResultDTO importBooks(BufferedReader reader, DataFormat format) throws IOException;
+}
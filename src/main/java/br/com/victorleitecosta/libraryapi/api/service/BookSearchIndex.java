@@ -0,0 +1,243 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+/**
+ * Inverted index over title, author and isbn of the catalog, used by the
+ * full-text search mode of {@code GET /api/books?q=}.
+ */
+@Service
+@Slf4j
+public class BookSearchIndex {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int ISBN_WEIGHT = 4;
+
+    private final BookRepository repository;
+    private final boolean rebuildOnStartup;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private Map<Long, Set<String>> documents = new HashMap<>();
+
+    /**
+     * Last change of each book indexed or removed while a rebuild reads the
+     * catalog, null for a removal. Replayed onto the rebuilt maps, which may
+     * have read the book before the change. Null when no rebuild is running.
+     */
+    private Map<Long, Book> changesDuringRebuild;
+
+    public BookSearchIndex(BookRepository repository,
+                           @Value("${application.search.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.repository = repository;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    public synchronized void rebuild() {
+        NavigableMap<String, Map<Long, Integer>> newPostings = new TreeMap<>();
+        Map<Long, Set<String>> newDocuments = new HashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Pageable pageable = PageRequest.of(0, REBUILD_PAGE_SIZE, ASC, "id");
+            Page<Book> page;
+            do {
+                page = repository.findAll(pageable);
+                page.forEach(book -> add(book, newPostings, newDocuments));
+                pageable = page.nextPageable();
+            } while (page.hasNext());
+        } catch (RuntimeException ex) {
+            discardChanges();
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach((id, book) -> {
+                remove(id, newPostings, newDocuments);
+                if (book != null) {
+                    add(book, newPostings, newDocuments);
+                }
+            });
+            changesDuringRebuild = null;
+            postings = newPostings;
+            documents = newDocuments;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info(" search index rebuilt with {} books ", newDocuments.size());
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            remove(book.getId(), postings, documents);
+            add(book, postings, documents);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(book.getId(), book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            remove(id, postings, documents);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(id, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void discardChanges() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the books matching the query, ranked by the number of
+     * matched terms and then by the weight of the fields they matched in.
+     */
+    public Page<Long> search(String query, Pageable pageable) {
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        Map<Long, Score> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String term : terms) {
+                Map<Long, Integer> matches = new HashMap<>();
+                for (Map<Long, Integer> posting : postingsFor(term)) {
+                    posting.forEach((id, weight) -> matches.merge(id, weight, Math::max));
+                }
+                matches.forEach((id, weight) -> scores.computeIfAbsent(id, key -> new Score()).add(weight));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> ranked = scores.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<Long, Score>>comparingInt(entry -> entry.getValue().terms).reversed()
+                        .thenComparing(Comparator.<Map.Entry<Long, Score>>comparingInt(entry -> entry.getValue().weight).reversed())
+                        .thenComparing(Map.Entry::getKey))
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        return new PageImpl<>(ranked, pageable, scores.size());
+    }
+
+    private Collection<Map<Long, Integer>> postingsFor(String term) {
+        if (term.length() < MIN_PREFIX_LENGTH) {
+            Map<Long, Integer> posting = postings.get(term);
+            return posting == null ? Collections.emptyList() : Collections.singletonList(posting);
+        }
+        return postings.subMap(term, true, term + Character.MAX_VALUE, false).values();
+    }
+
+    private static void add(Book book, Map<String, Map<Long, Integer>> postings, Map<Long, Set<String>> documents) {
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(book.getTitle()).forEach(token -> weights.merge(token, TITLE_WEIGHT, Integer::sum));
+        tokenize(book.getAuthor()).forEach(token -> weights.merge(token, AUTHOR_WEIGHT, Integer::sum));
+        tokenize(book.getIsbn()).forEach(token -> weights.merge(token, ISBN_WEIGHT, Integer::sum));
+
+        weights.forEach((token, weight) -> postings.computeIfAbsent(token, key -> new HashMap<>()).put(book.getId(), weight));
+        documents.put(book.getId(), weights.keySet());
+    }
+
+    private static void remove(Long id, Map<String, Map<Long, Integer>> postings, Map<Long, Set<String>> documents) {
+        Set<String> tokens = documents.remove(id);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Map<Long, Integer> posting = postings.get(token);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptySet();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.splitAsStream(normalized.toLowerCase(Locale.ROOT))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static class Score {
+        private int terms;
+        private int weight;
+
+        private void add(int weight) {
+            this.terms++;
+            this.weight += weight;
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package br.com.victorleitecosta.libraryapi.api.service;
 
+import br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface BookService {
     Book save(Book any);
 
+    List<Book> saveAll(List<Book> books);
+
     Optional<Book> getById(Long id);
 
     void delete(Book book);
@@ -17,5 +26,31 @@ public interface BookService {
 
     Page<Book> find(Book filter, Pageable pageRequest);
 
+    Page<Book> findApproximate(Book filter, Pageable pageRequest);
+
+    Slice<Book> findSlice(Book filter, Pageable pageRequest);
+
+    Page<Map<String, Object>> find(Book filter, Set<BookField> fields, Pageable pageRequest);
+
+    Page<Map<String, Object>> findApproximate(Book filter, Set<BookField> fields, Pageable pageRequest);
+
+    Slice<Map<String, Object>> findSlice(Book filter, Set<BookField> fields, Pageable pageRequest);
+
+    Page<Book> search(String query, Pageable pageRequest);
+
+    Slice<Book> findAfter(Cursor after, int size);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    Optional<Long> getVersion(Long id);
+
+    long getCatalogVersion();
+
+    Optional<Long> getLoansVersion(Long id);
+
+    void markLoansChanged(Collection<Long> bookIds);
+
+    List<Book> getBooksByIsbn(Collection<String> isbns);
+
+    List<BookAvailabilityDTO> getAvailability(Collection<String> isbns);
 }
@@ -0,0 +1,123 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.BookDailyLoans;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.model.entity.RollupGate;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookDailyLoansRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.CustomerLoansRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.RollupGateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the rollups behind the circulation reports: loans per book and day,
+ * and loan and return totals per customer. The loan service records every
+ * loan and return in its own transaction, so the rollups commit or roll back
+ * with the loans they count. Rows are created by the first loan that counts
+ * in them, through an upsert in that same transaction.
+ * <p>
+ * Updates and rebuilds are kept apart by the {@link RollupGate}: each update
+ * locks one stripe until its transaction ends, a rebuild locks all of them
+ * first. Loans made during a rebuild wait for it, up to the lock timeout of
+ * the database, instead of being lost or counted twice.
+ */
+@Service
+@Slf4j
+public class CirculationRollups {
+
+    static final int GATE_STRIPES = 16;
+
+    private final BookDailyLoansRepository dailyRepository;
+    private final CustomerLoansRepository customerRepository;
+    private final RollupGateRepository gateRepository;
+
+    public CirculationRollups(BookDailyLoansRepository dailyRepository,
+                              CustomerLoansRepository customerRepository,
+                              RollupGateRepository gateRepository) {
+        this.dailyRepository = dailyRepository;
+        this.customerRepository = customerRepository;
+        this.gateRepository = gateRepository;
+    }
+
+    @PostConstruct
+    public void createGate() {
+        for (int stripe = 0; stripe < GATE_STRIPES; stripe++) {
+            gateRepository.create(stripe);
+        }
+    }
+
+    public void recordLoans(Collection<Loan> loans) {
+        enterGate();
+        Map<BookDailyLoans.Key, Long> byBookAndDay = loans.stream()
+                .filter(loan -> loan.getLoanDate() != null)
+                .collect(Collectors.groupingBy(
+                        loan -> new BookDailyLoans.Key(loan.getLoanDate(), loan.getBook().getId()),
+                        Collectors.counting()));
+        byBookAndDay.forEach((key, count) -> dailyRepository.addLoans(key.getDay(), key.getBookId(), count));
+
+        Map<String, List<Loan>> byCustomer = loans.stream()
+                .filter(loan -> loan.getCustomer() != null && loan.getLoanDate() != null)
+                .collect(Collectors.groupingBy(Loan::getCustomer));
+        byCustomer.forEach((customer, customerLoans) -> {
+            LocalDate lastLoanDate = customerLoans.stream()
+                    .map(Loan::getLoanDate)
+                    .max(Comparator.naturalOrder())
+                    .get();
+            customerRepository.addLoans(customer, customerLoans.size(), lastLoanDate);
+        });
+    }
+
+    /**
+     * Adds the returns of each customer; a negative count takes back returns
+     * of loans that were reopened.
+     */
+    public void recordReturns(Map<String, Long> returnsByCustomer) {
+        enterGate();
+        returnsByCustomer.forEach((customer, returned) -> {
+            if (customer != null && returned != 0) {
+                customerRepository.addReturns(customer, returned);
+            }
+        });
+    }
+
+    /**
+     * Whether the rollups were never filled, as after the upgrade that
+     * introduced them.
+     */
+    @Transactional
+    public boolean isEmpty() {
+        return dailyRepository.count() == 0 && customerRepository.count() == 0;
+    }
+
+    /**
+     * Recomputes both rollups from the whole loan history in a single
+     * transaction. Meant for the backfill of existing loans and for repairs,
+     * not for regular use.
+     */
+    @Transactional
+    public void rebuild() {
+        gateRepository.lockAll();
+        dailyRepository.clear();
+        customerRepository.clear();
+        int days = dailyRepository.backfill();
+        int customers = customerRepository.backfill();
+        log.info(" circulation rollups rebuilt: {} book days, {} customers ", days, customers);
+    }
+
+    /**
+     * Locks the stripe of the current thread, which is the same for every
+     * update of a transaction, so a transaction never holds two stripes.
+     */
+    private void enterGate() {
+        gateRepository.lockStripe((int) Math.floorMod(Thread.currentThread().getId(), (long) GATE_STRIPES));
+    }
+}
@@ -0,0 +1,22 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * How the total of a page is obtained: an exact count query per request, or
+ * a count cached for {@code application.pagination.count-staleness}.
+ */
+public enum CountMode {
+    EXACT,
+    APPROXIMATE;
+
+    public static CountMode of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new BusinessException("Modo de contagem inválido.");
+        }
+    }
+}
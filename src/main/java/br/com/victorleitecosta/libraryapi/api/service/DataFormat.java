@@ -0,0 +1,42 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+public enum DataFormat {
+    NDJSON(DataFormat.NDJSON_VALUE, "ndjson"),
+    CSV(DataFormat.CSV_VALUE, "csv");
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    DataFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static DataFormat of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new BusinessException("Formato inválido.");
+        }
+    }
+
+    public static DataFormat of(MediaType mediaType) {
+        return mediaType.isCompatibleWith(CSV.mediaType) ? CSV : NDJSON;
+    }
+}
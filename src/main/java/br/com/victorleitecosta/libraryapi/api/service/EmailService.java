@@ -2,9 +2,9 @@ package br.com.victorleitecosta.libraryapi.api.service;
 
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.Map;
 
 @Service
 public interface EmailService {
-    void sendMails(String message, List<String> mailsList);
+    void sendMails(Map<String, String> messagesByRecipient);
 }
@@ -0,0 +1,11 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ExportService {
+
+    void exportBooks(DataFormat format, OutputStream output) throws IOException;
+
+    void exportLoans(DataFormat format, OutputStream output) throws IOException;
+}
@@ -0,0 +1,139 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel keyed by an id. The first level has
+ * {@code wheelSize} buckets of {@code tickMillis} each; every further level
+ * is created on demand with buckets as wide as a full turn of the level
+ * below, so adding, cancelling and expiring a timer is O(1) no matter how far
+ * away it is. Timers are cascaded down a level as their bucket comes up.
+ * <p>
+ * Not thread safe, callers synchronize.
+ */
+public class HierarchicalTimingWheel<K> {
+
+    private final Level<K> root;
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.root = new Level<>(tickMillis, wheelSize, startMillis);
+    }
+
+    /**
+     * Schedules the key to expire at the given time, replacing any timer the
+     * key already had. Returns false, without scheduling it, when the time is
+     * already within the current tick.
+     */
+    public boolean schedule(K key, long expirationMillis) {
+        cancel(key);
+        Timer<K> timer = new Timer<>(key, expirationMillis);
+        if (!root.add(timer)) {
+            return false;
+        }
+        timers.put(key, timer);
+        return true;
+    }
+
+    public boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        timer.cancelled = true;
+        return true;
+    }
+
+    public boolean contains(K key) {
+        return timers.containsKey(key);
+    }
+
+    public int size() {
+        return timers.size();
+    }
+
+    /**
+     * Moves the wheel forward to the given time and hands the keys whose
+     * timers expired to the consumer, in expiration order of their ticks.
+     */
+    public void advanceTo(long nowMillis, Consumer<K> expired) {
+        List<Timer<K>> drained = new ArrayList<>();
+        root.advance(nowMillis, drained);
+        for (Timer<K> timer : drained) {
+            if (timer.cancelled) {
+                continue;
+            }
+            if (!root.add(timer)) {
+                timers.remove(timer.key);
+                expired.accept(timer.key);
+            }
+        }
+    }
+
+    private static class Timer<K> {
+        private final K key;
+        private final long expiration;
+        private boolean cancelled;
+
+        private Timer(K key, long expiration) {
+            this.key = key;
+            this.expiration = expiration;
+        }
+    }
+
+    private static class Level<K> {
+        private final long tick;
+        private final int size;
+        private final long interval;
+        private final List<Set<Timer<K>>> buckets;
+        private long currentTime;
+        private Level<K> overflow;
+
+        private Level(long tick, int size, long startMillis) {
+            this.tick = tick;
+            this.size = size;
+            this.interval = tick * size;
+            this.currentTime = startMillis - Math.floorMod(startMillis, tick);
+            this.buckets = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                buckets.add(new LinkedHashSet<>());
+            }
+        }
+
+        private boolean add(Timer<K> timer) {
+            if (timer.expiration < currentTime + tick) {
+                return false;
+            }
+            if (timer.expiration < currentTime + interval) {
+                buckets.get(bucket(timer.expiration)).add(timer);
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(interval, size, currentTime);
+            }
+            return overflow.add(timer);
+        }
+
+        private void advance(long nowMillis, List<Timer<K>> drained) {
+            while (currentTime + tick <= nowMillis) {
+                currentTime += tick;
+                Set<Timer<K>> bucket = buckets.get(bucket(currentTime));
+                drained.addAll(bucket);
+                bucket.clear();
+            }
+            if (overflow != null) {
+                overflow.advance(nowMillis, drained);
+            }
+        }
+
+        private int bucket(long time) {
+            return (int) Math.floorMod(Math.floorDiv(time, tick), (long) size);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease lock kept in the {@code job_lock} table, so that a scheduled job
+ * runs on a single node at a time. The owner has to renew the lease while
+ * it works; a node that dies just lets it expire.
+ */
+@Service
+@Slf4j
+public class JobLockService {
+
+    private final JobLockRepository repository;
+    private final String nodeId;
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-lock-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JobLockService(JobLockRepository repository,
+                          @Value("${application.scheduling.node-id:}") String nodeId) {
+        this.repository = repository;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean tryLock(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.acquire(name, nodeId, now, now.plus(lease)) == 1) {
+            return true;
+        }
+        if (repository.existsById(name)) {
+            return false;
+        }
+        try {
+            return repository.create(name, nodeId, now, now.plus(lease)) == 1;
+        } catch (DataIntegrityViolationException ex) {
+            log.debug(" lock {} created by another node ", name);
+            return false;
+        }
+    }
+
+    /**
+     * Extends the lease of a lock this node still holds. Returns false when
+     * the lease had already expired, as another node may have taken it.
+     */
+    public boolean renew(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.renew(name, nodeId, now, now.plus(lease)) == 1;
+    }
+
+    /**
+     * Renews the lease from a thread of its own every third of its length,
+     * until the returned future is cancelled or a renewal finds it lost, so
+     * that a long job keeps the lock for as long as it runs.
+     */
+    public ScheduledFuture<?> keepRenewed(String name, Duration lease) {
+        long renewEvery = Math.max(1, lease.toMillis() / 3);
+        return leaseRenewer.scheduleAtFixedRate(() -> {
+            boolean held;
+            try {
+                held = renew(name, lease);
+            } catch (RuntimeException ex) {
+                log.warn(" could not renew the lease of lock {} ", name, ex);
+                return;
+            }
+            if (!held) {
+                // a periodic task that throws is not run again
+                throw new IllegalStateException("Lost the lease of lock " + name);
+            }
+        }, renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        leaseRenewer.shutdownNow();
+    }
+
+    public void unlock(String name) {
+        repository.release(name, nodeId, LocalDateTime.now());
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
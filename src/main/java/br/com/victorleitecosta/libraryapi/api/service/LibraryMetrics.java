@@ -0,0 +1,62 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Supplier;
+
+/**
+ * Records the domain metrics named in
+ * {@link br.com.victorleitecosta.libraryapi.config.MetricsConfig}. Timed
+ * calls are tagged with the outcome: success, rejected (a
+ * {@link BusinessException}) or error.
+ */
+@Service
+public class LibraryMetrics {
+
+    private final MeterRegistry registry;
+
+    public LibraryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T time(String name, String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } catch (BusinessException ex) {
+            outcome = "rejected";
+            throw ex;
+        } finally {
+            sample.stop(registry.timer(name, "operation", operation, "outcome", outcome));
+        }
+    }
+
+    public void time(String name, String operation, Runnable call) {
+        time(name, operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String name, String... tags) {
+        sample.stop(registry.timer(name, tags));
+    }
+
+    public void increment(String name, double amount, String... tags) {
+        registry.counter(name, tags).increment(amount);
+    }
+
+    public void record(String name, double amount) {
+        registry.summary(name).record(amount);
+    }
+}
@@ -0,0 +1,124 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a timer per open loan that was not notified yet and publishes a
+ * {@link LoansDueEvent} when the loans reach their due time, so the reminders
+ * are spread over the day instead of going out in the nightly job.
+ */
+@Service
+@Slf4j
+public class LoanDueScheduler {
+
+    private static final int WHEEL_SIZE = 60;
+
+    private final LoanRepository repository;
+    private final ApplicationEventPublisher publisher;
+    private final Clock clock;
+    private final long tickMillis;
+    private final HierarchicalTimingWheel<Long> wheel;
+    private ScheduledExecutorService ticker;
+
+    @Autowired
+    public LoanDueScheduler(LoanRepository repository,
+                            ApplicationEventPublisher publisher,
+                            @Value("${application.loans.reminder-wheel.tick:1000}") long tickMillis) {
+        this(repository, publisher, Clock.systemDefaultZone(), tickMillis);
+    }
+
+    public LoanDueScheduler(LoanRepository repository, ApplicationEventPublisher publisher, Clock clock, long tickMillis) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, WHEEL_SIZE, clock.millis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        load();
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loan-due-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public void load() {
+        List<Long> due = new ArrayList<>();
+        repository.findPendingDueDates().forEach(loan -> {
+            if (!scheduleTimer(loan.getId(), loan.getDueAt())) {
+                due.add(loan.getId());
+            }
+        });
+        log.info(" loan due wheel loaded with {} timers ", size());
+        publish(due);
+    }
+
+    public void schedule(Long loanId, LocalDateTime dueAt) {
+        if (!scheduleTimer(loanId, dueAt)) {
+            publish(Collections.singletonList(loanId));
+        }
+    }
+
+    public synchronized void cancel(Long loanId) {
+        wheel.cancel(loanId);
+    }
+
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    public void tick() {
+        List<Long> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advanceTo(clock.millis(), due::add);
+        }
+        publish(due);
+    }
+
+    private synchronized boolean scheduleTimer(Long loanId, LocalDateTime dueAt) {
+        if (dueAt == null) {
+            return true;
+        }
+        long dueMillis = dueAt.atZone(clock.getZone()).toInstant().toEpochMilli();
+        return wheel.schedule(loanId, dueMillis);
+    }
+
+    private void publish(List<Long> loanIds) {
+        if (loanIds.isEmpty()) {
+            return;
+        }
+        try {
+            publisher.publishEvent(new LoansDueEvent(loanIds));
+        } catch (RuntimeException ex) {
+            log.error(" failed to handle {} due loans ", loanIds.size(), ex);
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package br.com.victorleitecosta.libraryapi.api.service;
 
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
+import br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanFilterDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,9 +25,35 @@ public interface LoanService {
 
     Loan update(Loan loan);
 
+    List<LoanBatchItemDTO> saveAll(List<LoanDTO> loans);
+
+    List<LoanBatchItemDTO> returnAll(List<Long> loanIds);
+
     Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable);
 
+    Page<LoanDTO> findDetails(LoanFilterDTO filterDTO, Pageable pageable);
+
+    Page<LoanDTO> findDetailsApproximate(LoanFilterDTO filterDTO, Pageable pageable);
+
+    Slice<LoanDTO> findDetailsSlice(LoanFilterDTO filterDTO, Pageable pageable);
+
+    Slice<Loan> findAfter(LoanFilterDTO filterDTO, Cursor after, int size);
+
     Page<Loan> getLoansByBook(Book book, Pageable pageable);
 
-    List<Loan> getAllLateLoans();
+    Page<LoanDTO> getLoanDetailsByBook(Long bookId, Pageable pageable);
+
+    List<LateCustomerDTO> getCustomersToNotifyAfter(LocalDateTime watermark, LocalDateTime dueBefore,
+                                                    LocalDate reminderDate, String lastEmail, String upperEmail, int size);
+
+    List<LateLoanDTO> getLateLoansByCustomers(LocalDateTime dueBefore, Collection<String> emails);
+
+    /**
+     * Claims the first notice of the loans still waiting for it under the
+     * given claim token, unique per call, and returns the ones claimed.
+     */
+    List<LateLoanDTO> claimLoansToRemind(Collection<Long> loanIds, String claim,
+                                         LocalDate notifiedAt, LocalDate nextReminderAt);
+
+    void markNotified(Collection<Long> loanIds, LocalDate notifiedAt, LocalDate nextReminderAt);
 }
@@ -0,0 +1,17 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Published by {@link LoanDueScheduler} with the loans that reached their due
+ * time in the same tick.
+ */
+@Getter
+@RequiredArgsConstructor
+public class LoansDueEvent {
+
+    private final List<Long> loanIds;
+}
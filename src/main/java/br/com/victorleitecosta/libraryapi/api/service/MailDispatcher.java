@@ -0,0 +1,301 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxStatus;
+import br.com.victorleitecosta.libraryapi.api.model.repository.OutboxMailRepository;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.MAIL_BATCH;
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.MAIL_FAILURES;
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.MAIL_SEND;
+
+/**
+ * Drains the mail outbox. Due mails are claimed in batches and split among a
+ * fixed pool of workers; each worker sends its share through a single SMTP
+ * connection, waiting for the shared rate limiter before each mail.
+ * Failed mails are retried with exponential backoff until
+ * {@code max-attempts} is reached.
+ */
+@Service
+@Slf4j
+public class MailDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final String DEFAULT_PROTOCOL = "smtp";
+
+    private final OutboxMailRepository repository;
+    private final JavaMailSenderImpl mailSender;
+    private final String remetent;
+    private final int batchSize;
+    private final int workers;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration maxRetryDelay;
+    private final Duration lease;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService executor;
+    private final LibraryMetrics metrics;
+
+    public MailDispatcher(OutboxMailRepository repository,
+                          JavaMailSenderImpl mailSender,
+                          @Value("${application.mail.default-remetent}") String remetent,
+                          @Value("${application.mail.outbox.batch-size:100}") int batchSize,
+                          @Value("${application.mail.outbox.workers:4}") int workers,
+                          @Value("${application.mail.outbox.rate-per-second:20}") int ratePerSecond,
+                          @Value("${application.mail.outbox.max-attempts:8}") int maxAttempts,
+                          @Value("${application.mail.outbox.retry-delay:30000}") long retryDelay,
+                          @Value("${application.mail.outbox.max-retry-delay:3600000}") long maxRetryDelay,
+                          @Value("${application.mail.outbox.lease:300000}") long lease,
+                          LibraryMetrics metrics) {
+        this.repository = repository;
+        this.mailSender = mailSender;
+        this.remetent = remetent;
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = Duration.ofMillis(retryDelay);
+        this.maxRetryDelay = Duration.ofMillis(maxRetryDelay);
+        this.lease = Duration.ofMillis(lease);
+        this.metrics = metrics;
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers), new WorkerThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${application.mail.outbox.poll-interval:5000}")
+    public synchronized void dispatch() {
+        List<OutboxMail> batch;
+        do {
+            batch = claimBatch();
+            if (!batch.isEmpty()) {
+                sendBatch(batch);
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    private List<OutboxMail> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = repository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String token = UUID.randomUUID().toString();
+        repository.claim(ids, token, now, now.plus(lease));
+        return repository.findByClaimToken(token);
+    }
+
+    private void sendBatch(List<OutboxMail> batch) {
+        int shareSize = (batch.size() + workers - 1) / workers;
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int from = 0; from < batch.size(); from += shareSize) {
+            List<OutboxMail> share = batch.subList(from, Math.min(from + shareSize, batch.size()));
+            futures.add(executor.submit(() -> send(share)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                log.error(" outbox worker failed ", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends the mails one by one on a single open connection, taking a permit
+     * from the rate limiter right before each of them, so the configured rate
+     * holds on the wire and not only when the messages are built.
+     */
+    private void send(List<OutboxMail> mails) {
+        Map<OutboxMail, Exception> failures = new IdentityHashMap<>();
+        Timer.Sample sample = metrics.start();
+        try {
+            Transport transport = connect();
+            try {
+                for (OutboxMail mail : mails) {
+                    rateLimiter.acquire();
+                    try {
+                        MimeMessage message = toMessage(mail);
+                        transport.sendMessage(message, message.getAllRecipients());
+                    } catch (MessagingException | MailException ex) {
+                        failures.put(mail, ex);
+                    }
+                }
+            } finally {
+                close(transport);
+            }
+        } catch (MessagingException ex) {
+            for (OutboxMail mail : mails) {
+                failures.putIfAbsent(mail, ex);
+            }
+        }
+        metrics.stop(sample, MAIL_SEND, "outcome", failures.isEmpty() ? "success" : "error");
+        metrics.record(MAIL_BATCH, mails.size());
+
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxMail mail : mails) {
+            Exception failure = failures.get(mail);
+            if (failure == null) {
+                markSent(mail, now);
+            } else {
+                markFailed(mail, failure, now);
+            }
+        }
+        saveOutcomes(mails);
+    }
+
+    private Transport connect() throws MessagingException {
+        String protocol = mailSender.getProtocol() == null ? DEFAULT_PROTOCOL : mailSender.getProtocol();
+        Transport transport = mailSender.getSession().getTransport(protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(),
+                emptyToNull(mailSender.getUsername()), emptyToNull(mailSender.getPassword()));
+        return transport;
+    }
+
+    /**
+     * Saves the outcome of the mails still under this worker's claim. A mail
+     * whose lease expired and was claimed again fails the version check and
+     * is left to the new claim.
+     */
+    private void saveOutcomes(List<OutboxMail> mails) {
+        try {
+            repository.saveAll(mails);
+        } catch (OptimisticLockingFailureException ex) {
+            for (OutboxMail mail : mails) {
+                try {
+                    repository.save(mail);
+                } catch (OptimisticLockingFailureException lost) {
+                    log.warn(" mail {} was claimed again after its lease expired ", mail.getId());
+                }
+            }
+        }
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException ex) {
+            log.debug(" could not close the SMTP connection ", ex);
+        }
+    }
+
+    private MimeMessage toMessage(OutboxMail mail) throws MessagingException {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(remetent);
+        message.setTo(mail.getRecipient());
+        message.setSubject(mail.getSubject());
+        message.setText(mail.getBody());
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        message.copyTo(new MimeMailMessage(mimeMessage));
+        mimeMessage.setSentDate(new Date());
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
+
+    private void markSent(OutboxMail mail, LocalDateTime now) {
+        mail.setAttempts(mail.getAttempts() + 1);
+        mail.setStatus(OutboxStatus.SENT);
+        mail.setSentAt(now);
+        mail.setClaimToken(null);
+        mail.setLastError(null);
+    }
+
+    private void markFailed(OutboxMail mail, Exception failure, LocalDateTime now) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setClaimToken(null);
+        mail.setLastError(truncate(String.valueOf(failure.getMessage())));
+        boolean givingUp = attempts >= maxAttempts;
+        metrics.increment(MAIL_FAILURES, 1, "outcome", givingUp ? "failed" : "retry");
+        if (givingUp) {
+            mail.setStatus(OutboxStatus.FAILED);
+            log.warn(" giving up on mail {} to {} after {} attempts ", mail.getId(), mail.getRecipient(), attempts);
+        } else {
+            mail.setStatus(OutboxStatus.PENDING);
+            mail.setNextAttemptAt(now.plus(backoff(attempts)));
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return delay.compareTo(maxRetryDelay) > 0 || delay.isNegative() ? maxRetryDelay : delay;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String truncate(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * Spaces out permits evenly so that all workers together stay under the
+     * configured number of mails per second.
+     */
+    static class RateLimiter {
+
+        private final long intervalNanos;
+        private long nextFreeSlot = System.nanoTime();
+
+        RateLimiter(int permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+        }
+
+        void acquire() {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long slot = Math.max(now, nextFreeSlot);
+                nextFreeSlot = slot + intervalNanos;
+                wait = slot - now;
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mail-outbox-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package br.com.victorleitecosta.libraryapi.api.service;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.DailyLoansDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReportService {
+    List<BookLoansDTO> getMostBorrowed(LocalDate from, LocalDate to, int size);
+
+    List<DailyLoansDTO> getDailyLoans(LocalDate from, LocalDate to);
+
+    Slice<CustomerActivityDTO> getMostActiveCustomers(Pageable pageable);
+
+    Optional<CustomerActivityDTO> getCustomerActivity(String customer);
+
+    /**
+     * Recomputes the rollups from the loan history. Returns false when
+     * another node is already doing it.
+     */
+    boolean rebuildRollups();
+}
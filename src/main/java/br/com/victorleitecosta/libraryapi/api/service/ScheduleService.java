@@ -1,33 +1,440 @@
 package br.com.victorleitecosta.libraryapi.api.service;
 
-import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
-import lombok.RequiredArgsConstructor;
+import br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobCheckpoint;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobPartition;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobStatus;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobCheckpointRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobPartitionRepository;
+import br.com.victorleitecosta.libraryapi.monitoring.LateLoansChunkEvent;
+import br.com.victorleitecosta.libraryapi.monitoring.LateLoansJobEvent;
+import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.LATE_LOANS_CHUNK;
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.LATE_LOANS_NOTIFIED;
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.LATE_LOANS_RUN;
+import static java.time.LocalDate.now;
+
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class ScheduleService {
 
     private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+    static final String LATE_LOANS_JOB = "lateLoans";
+    private static final int MAX_DIGEST_TITLES = 50;
+    private static final int DIGEST_TRAILER_LENGTH = 40;
+    private static final LocalDateTime FIRST_WATERMARK = LocalDate.EPOCH.atStartOfDay();
 
-    @Value("${application.mail.lateloans.message}")
-    private String message;
-
+    private final String message;
+    private final int chunkSize;
+    private final int reminderIntervalDays;
+    private final boolean partitioned;
+    private final int partitionSize;
+    private final Duration lease;
     private final LoanService loanService;
     private final EmailService emailService;
+    private final JobCheckpointRepository checkpointRepository;
+    private final JobPartitionRepository partitionRepository;
+    private final JobLockService jobLockService;
+    private final LibraryMetrics metrics;
+    private final TransactionOperations transactions;
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "late-loans-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ScheduleService(@Value("${application.mail.lateloans.message}") String message,
+                           @Value("${application.mail.lateloans.chunk-size:500}") int chunkSize,
+                           @Value("${application.mail.lateloans.reminder-interval-days:7}") int reminderIntervalDays,
+                           @Value("${application.mail.lateloans.partitioned:false}") boolean partitioned,
+                           @Value("${application.mail.lateloans.partition-size:5000}") int partitionSize,
+                           @Value("${application.mail.lateloans.lease:600000}") long lease,
+                           LoanService loanService,
+                           EmailService emailService,
+                           JobCheckpointRepository checkpointRepository,
+                           JobPartitionRepository partitionRepository,
+                           JobLockService jobLockService,
+                           LibraryMetrics metrics,
+                           TransactionOperations transactions) {
+        this.message = message;
+        this.chunkSize = chunkSize;
+        this.reminderIntervalDays = reminderIntervalDays;
+        this.partitioned = partitioned;
+        this.partitionSize = partitionSize;
+        this.lease = Duration.ofMillis(lease);
+        this.loanService = loanService;
+        this.emailService = emailService;
+        this.checkpointRepository = checkpointRepository;
+        this.partitionRepository = partitionRepository;
+        this.jobLockService = jobLockService;
+        this.metrics = metrics;
+        this.transactions = transactions;
+    }
+
+    @PreDestroy
+    public void stop() {
+        leaseRenewer.shutdownNow();
+    }
 
+    /**
+     * Runs on every node. Without partitions only the node that gets the
+     * lease does the job; with partitions that node splits the run in slices
+     * of customers and every node works on the slices it manages to claim.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMailToLateLoans() {
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
-        List<String> mailsList = allLateLoans.stream()
-                .map(Loan::getCustomerEmail)
-                .collect(Collectors.toList());
+        Timer.Sample sample = metrics.start();
+        LateLoansJobEvent event = new LateLoansJobEvent();
+        event.begin();
+        try {
+            if (partitioned) {
+                runLocked(held -> planPartitions());
+                processPartitions();
+            } else {
+                runLocked(this::runLateLoans);
+            }
+        } finally {
+            String mode = partitioned ? "partitioned" : "single";
+            metrics.stop(sample, LATE_LOANS_RUN, "mode", mode);
+            event.mode = mode;
+            event.commit();
+        }
+    }
+
+    private void runLateLoans(AtomicBoolean held) {
+        Optional<JobCheckpoint> previous = checkpointRepository.findById(LATE_LOANS_JOB);
+        JobCheckpoint checkpoint = previous
+                .filter(this::isUnfinishedRunOfToday)
+                .orElseGet(() -> startLateLoansRun(previous.map(JobCheckpoint::getWatermark).orElse(FIRST_WATERMARK)));
+        processLateLoans(checkpoint, held);
+    }
+
+    /**
+     * Finishes a run of today that was interrupted, e.g. by a crash or a
+     * restart of the node while the job was sending the chunks.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeLateLoans() {
+        if (partitioned) {
+            processPartitions();
+            return;
+        }
+        runLocked(held -> checkpointRepository.findById(LATE_LOANS_JOB)
+                .filter(this::isUnfinishedRunOfToday)
+                .ifPresent(checkpoint -> {
+                    log.info(" resuming late loans job after customer {} ", checkpoint.getLastKey());
+                    processLateLoans(checkpoint, held);
+                }));
+    }
+
+    /**
+     * Picks up the slices that were planned while this node was busy or
+     * that were left behind by a node whose lease expired.
+     */
+    @Scheduled(fixedDelayString = "${application.mail.lateloans.partition-poll:60000}")
+    public void pollPartitions() {
+        if (partitioned) {
+            processPartitions();
+        }
+    }
+
+    /**
+     * Notifies the customers with loans that became late between the watermark
+     * of the previous run and the start of the day, or whose reminder is due.
+     * Each digest lists all the late loans of the customer, and all of them are
+     * marked as notified. Loans due during the day are left to the
+     * {@link LoanDueScheduler}. Stops at the next chunk once {@code held}
+     * tells that the lease of the job lock was lost.
+     */
+    private void processLateLoans(JobCheckpoint checkpoint, AtomicBoolean held) {
+        boolean finished = processCustomers(checkpoint, checkpoint.getLastKey(), null, lastKey -> {
+            if (!held.get()) {
+                return false;
+            }
+            checkpoint.setLastKey(lastKey);
+            save(checkpoint);
+            return true;
+        });
+        if (!finished) {
+            log.warn(" lost the late loans lease after customer {} ", checkpoint.getLastKey());
+            return;
+        }
+        complete(checkpoint);
+    }
+
+    private void planPartitions() {
+        LocalDate today = now();
+        if (partitionRepository.existsByJobNameAndRunDate(LATE_LOANS_JOB, today)) {
+            return;
+        }
+        JobCheckpoint checkpoint = startLateLoansRun(checkpointRepository.findById(LATE_LOANS_JOB)
+                .map(JobCheckpoint::getWatermark)
+                .orElse(FIRST_WATERMARK));
+        LocalDateTime dueBefore = today.atStartOfDay();
+
+        List<JobPartition> partitions = new ArrayList<>();
+        String lowerKey = "";
+        String upperKey;
+        do {
+            List<LateCustomerDTO> slice = loanService.getCustomersToNotifyAfter(
+                    checkpoint.getWatermark(), dueBefore, today, lowerKey, null, partitionSize);
+            upperKey = slice.size() == partitionSize ? slice.get(slice.size() - 1).getEmail() : null;
+            partitions.add(JobPartition.builder()
+                    .jobName(LATE_LOANS_JOB)
+                    .runDate(today)
+                    .lowerKey(lowerKey)
+                    .upperKey(upperKey)
+                    .lastKey(lowerKey)
+                    .status(JobStatus.PENDING)
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+            lowerKey = upperKey;
+        } while (upperKey != null);
+
+        partitionRepository.saveAll(partitions);
+        log.info(" late loans job split in {} partitions ", partitions.size());
+    }
+
+    private void processPartitions() {
+        Optional<JobCheckpoint> run = checkpointRepository.findById(LATE_LOANS_JOB)
+                .filter(checkpoint -> checkpoint.getStatus() == JobStatus.RUNNING);
+        if (run.isEmpty()) {
+            return;
+        }
+        JobCheckpoint checkpoint = run.get();
+        Optional<JobPartition> claimed;
+        while ((claimed = claimPartition(checkpoint.getRunDate())).isPresent()) {
+            JobPartition partition = claimed.get();
+            AtomicBoolean held = new AtomicBoolean(true);
+            ScheduledFuture<?> renewal = renewLease(held, () -> {
+                LocalDateTime now = LocalDateTime.now();
+                return partitionRepository.renew(partition.getId(), jobLockService.getNodeId(), now, now.plus(lease)) == 1;
+            }, "partition " + partition.getId());
+            boolean finished;
+            try {
+                finished = processCustomers(checkpoint, partition.getLastKey(), partition.getUpperKey(),
+                        lastKey -> held.get() && saveProgress(partition, lastKey, JobStatus.RUNNING));
+            } finally {
+                renewal.cancel(false);
+            }
+            if (!finished || !saveProgress(partition, partition.getLastKey(), JobStatus.COMPLETED)) {
+                log.warn(" lost partition {} of the late loans job after customer {} ", partition.getId(), partition.getLastKey());
+            }
+        }
+        if (partitionRepository.existsByJobNameAndRunDate(LATE_LOANS_JOB, checkpoint.getRunDate())
+                && partitionRepository.countByJobNameAndRunDateAndStatusNot(
+                        LATE_LOANS_JOB, checkpoint.getRunDate(), JobStatus.COMPLETED) == 0) {
+            complete(checkpoint);
+        }
+    }
+
+    private Optional<JobPartition> claimPartition(LocalDate runDate) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long id : partitionRepository.findClaimableIds(LATE_LOANS_JOB, runDate, now, PageRequest.of(0, 10))) {
+            if (partitionRepository.claim(id, jobLockService.getNodeId(), now, now.plus(lease)) == 1) {
+                return partitionRepository.findById(id);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Keeps a lease alive from the lease thread, every third of its length,
+     * so a chunk that takes longer than the lease does not let another node
+     * take over work that is still in progress. {@code held} turns false
+     * once a renewal finds the lease already lost.
+     */
+    private ScheduledFuture<?> renewLease(AtomicBoolean held, BooleanSupplier renew, String name) {
+        long renewEvery = Math.max(1, lease.toMillis() / 3);
+        return leaseRenewer.scheduleAtFixedRate(() -> {
+            if (!held.get()) {
+                return;
+            }
+            try {
+                if (!renew.getAsBoolean()) {
+                    held.set(false);
+                }
+            } catch (RuntimeException ex) {
+                log.warn(" could not renew the lease of {} ", name, ex);
+            }
+        }, renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean saveProgress(JobPartition partition, String lastKey, JobStatus status) {
+        partition.setLastKey(lastKey);
+        LocalDateTime now = LocalDateTime.now();
+        return partitionRepository.saveProgress(
+                partition.getId(), jobLockService.getNodeId(), lastKey, status, now, now.plus(lease)) == 1;
+    }
+
+    /**
+     * Sends the digests of the customers after {@code lastKey} up to
+     * {@code upperKey}, chunk by chunk. The mails of a chunk, the loans marked
+     * as notified and the progress saved by {@code progress} commit together,
+     * so a run resumed after a crash never sends a chunk twice. Returns false,
+     * rolling the chunk back, as soon as {@code progress} tells that the job
+     * was taken over by another node.
+     */
+    private boolean processCustomers(JobCheckpoint checkpoint, String lastKey, String upperKey, Predicate<String> progress) {
+        LocalDateTime dueBefore = checkpoint.getRunDate().atStartOfDay();
+        List<LateCustomerDTO> chunk;
+        do {
+            chunk = loanService.getCustomersToNotifyAfter(
+                    checkpoint.getWatermark(), dueBefore, now(), lastKey, upperKey, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            LateLoansChunkEvent event = new LateLoansChunkEvent();
+            event.begin();
+            List<String> emails = chunk.stream().map(LateCustomerDTO::getEmail).collect(Collectors.toList());
+            String chunkLastKey = chunk.get(chunk.size() - 1).getEmail();
+            metrics.record(LATE_LOANS_CHUNK, chunk.size());
+            Integer notified = transactions.execute(status -> {
+                List<LateLoanDTO> loans = loanService.getLateLoansByCustomers(dueBefore, emails);
+                sendDigests(loans);
+                LocalDate today = now();
+                loanService.markNotified(
+                        loans.stream().map(LateLoanDTO::getId).collect(Collectors.toList()),
+                        today,
+                        today.plusDays(reminderIntervalDays));
+                if (!progress.test(chunkLastKey)) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+                return loans.size();
+            });
+
+            lastKey = chunkLastKey;
+            event.customers = chunk.size();
+            event.loans = notified == null ? 0 : notified;
+            event.commit();
+            if (notified == null) {
+                return false;
+            }
+        } while (chunk.size() == chunkSize);
+        return true;
+    }
+
+    private void complete(JobCheckpoint checkpoint) {
+        checkpoint.setWatermark(checkpoint.getRunDate().atStartOfDay());
+        checkpoint.setStatus(JobStatus.COMPLETED);
+        save(checkpoint);
+        log.info(" late loans job finished after customer {} ", checkpoint.getLastKey());
+    }
+
+    /**
+     * Sends the reminders of the loans that reached their due time, as fired
+     * by the {@link LoanDueScheduler}, grouped in one digest per customer.
+     * Every node fires the timers of the loans it loaded, so each loan is
+     * claimed first and the claim commits together with the outbox mails.
+     */
+    @EventListener
+    @Transactional
+    public void onLoansDue(LoansDueEvent event) {
+        LocalDate today = now();
+        String claim = jobLockService.getNodeId() + ":" + UUID.randomUUID();
+        sendDigests(loanService.claimLoansToRemind(event.getLoanIds(), claim, today, today.plusDays(reminderIntervalDays)));
+    }
+
+    private void sendDigests(List<LateLoanDTO> loans) {
+        if (loans.isEmpty()) {
+            return;
+        }
+        Map<String, List<LateLoanDTO>> loansByEmail = loans.stream()
+                .collect(Collectors.groupingBy(LateLoanDTO::getEmail, LinkedHashMap::new, Collectors.toList()));
+
+        Map<String, String> digests = new LinkedHashMap<>();
+        loansByEmail.forEach((email, customerLoans) -> digests.put(email, digest(customerLoans)));
+        emailService.sendMails(digests);
+        metrics.increment(LATE_LOANS_NOTIFIED, loans.size());
+    }
+
+    /**
+     * One message per customer, listing the late titles after the configured
+     * late loans text for as long as they fit in the outbox body; the rest
+     * are only counted.
+     */
+    private String digest(List<LateLoanDTO> loans) {
+        StringBuilder digest = new StringBuilder(message).append("\n\nLivros em atraso:");
+        int budget = OutboxMail.BODY_LENGTH - DIGEST_TRAILER_LENGTH;
+        int listed = 0;
+        for (LateLoanDTO loan : loans) {
+            String line = "\n- " + loan.getTitle() + " (isbn " + loan.getIsbn() + ")";
+            if (listed == MAX_DIGEST_TITLES || digest.length() + line.length() > budget) {
+                break;
+            }
+            digest.append(line);
+            listed++;
+        }
+        if (loans.size() > listed) {
+            digest.append("\n... e mais ").append(loans.size() - listed).append(" livros.");
+        }
+        return digest.length() > OutboxMail.BODY_LENGTH ? digest.substring(0, OutboxMail.BODY_LENGTH) : digest.toString();
+    }
+
+    private void runLocked(Consumer<AtomicBoolean> job) {
+        if (!jobLockService.tryLock(LATE_LOANS_JOB, lease)) {
+            log.info(" late loans job is held by another node ");
+            return;
+        }
+        AtomicBoolean held = new AtomicBoolean(true);
+        ScheduledFuture<?> renewal = renewLease(held, () -> jobLockService.renew(LATE_LOANS_JOB, lease), LATE_LOANS_JOB);
+        try {
+            job.accept(held);
+        } finally {
+            renewal.cancel(false);
+            jobLockService.unlock(LATE_LOANS_JOB);
+        }
+    }
+
+    private boolean isUnfinishedRunOfToday(JobCheckpoint checkpoint) {
+        return checkpoint.getStatus() == JobStatus.RUNNING && now().equals(checkpoint.getRunDate());
+    }
+
+    private JobCheckpoint startLateLoansRun(LocalDateTime watermark) {
+        return save(JobCheckpoint.builder()
+                .jobName(LATE_LOANS_JOB)
+                .runDate(now())
+                .lastKey("")
+                .watermark(watermark)
+                .status(JobStatus.RUNNING)
+                .build());
+    }
 
-        emailService.sendMails(message, mailsList);
+    private JobCheckpoint save(JobCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        return checkpointRepository.save(checkpoint);
     }
 }
@@ -0,0 +1,169 @@
+package br.com.victorleitecosta.libraryapi.api.service.impl;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportErrorDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportResultDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookImportService;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.DataFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final String CSV_HEADER = "title,author,isbn";
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final BookService bookService;
+    private final BookRepository repository;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BookImportServiceImpl(BookService bookService,
+                                 BookRepository repository,
+                                 Validator validator,
+                                 ObjectMapper objectMapper,
+                                 @Value("${application.books.import.chunk-size:500}") int chunkSize) {
+        this.bookService = bookService;
+        this.repository = repository;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public BookImportResultDTO importBooks(BufferedReader reader, DataFormat format) throws IOException {
+        BookImportResultDTO result = new BookImportResultDTO();
+        Map<Long, BookDTO> chunk = new LinkedHashMap<>();
+
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (format == DataFormat.CSV && lineNumber == 1 && isCsvHeader(line))) {
+                continue;
+            }
+            try {
+                BookDTO dto = format == DataFormat.CSV ? parseCsv(line) : objectMapper.readValue(line, BookDTO.class);
+                List<String> errors = validate(dto);
+                if (errors.isEmpty()) {
+                    chunk.put(lineNumber, dto);
+                } else {
+                    reject(result, lineNumber, errors);
+                }
+            } catch (JsonProcessingException | IllegalArgumentException ex) {
+                reject(result, lineNumber, Collections.singletonList("Linha inválida."));
+            }
+            if (chunk.size() >= chunkSize) {
+                flush(chunk, result);
+            }
+        }
+        flush(chunk, result);
+
+        log.info(" bulk import finished: {} imported, {} failed ", result.getImported(), result.getFailed());
+        return result;
+    }
+
+    /**
+     * Saves the chunk in a transaction of its own, so a database error fails
+     * only the lines of that chunk.
+     */
+    private void flush(Map<Long, BookDTO> chunk, BookImportResultDTO result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> isbns = chunk.values().stream().map(BookDTO::getIsbn).collect(Collectors.toSet());
+        Set<String> existing = new HashSet<>(repository.findExistingIsbns(isbns));
+
+        List<Book> books = new ArrayList<>(chunk.size());
+        List<Long> lines = new ArrayList<>(chunk.size());
+        chunk.forEach((lineNumber, dto) -> {
+            if (!existing.add(dto.getIsbn())) {
+                reject(result, lineNumber, Collections.singletonList("Isbn já cadastrado."));
+                return;
+            }
+            books.add(Book.builder().title(dto.getTitle()).author(dto.getAuthor()).isbn(dto.getIsbn()).build());
+            lines.add(lineNumber);
+        });
+        chunk.clear();
+        if (books.isEmpty()) {
+            return;
+        }
+
+        try {
+            bookService.saveAll(books);
+            result.setImported(result.getImported() + books.size());
+        } catch (DataAccessException | TransactionException ex) {
+            log.warn(" bulk import chunk of lines {} to {} failed ", lines.get(0), lines.get(lines.size() - 1), ex);
+            lines.forEach(lineNumber -> reject(result, lineNumber, Collections.singletonList("Erro ao gravar o lote.")));
+        }
+    }
+
+    private List<String> validate(BookDTO dto) {
+        Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private void reject(BookImportResultDTO result, long lineNumber, List<String> errors) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new BookImportErrorDTO(lineNumber, errors));
+        }
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.replace(" ", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    static BookDTO parseCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+
+        if (quoted || fields.size() != 3) {
+            throw new IllegalArgumentException("Expected title,author,isbn but got " + fields.size() + " fields");
+        }
+        return BookDTO.builder().title(fields.get(0)).author(fields.get(1)).isbn(fields.get(2)).build();
+    }
+}
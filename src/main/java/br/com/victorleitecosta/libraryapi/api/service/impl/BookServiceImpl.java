@@ -1,69 +1,294 @@
 package br.com.victorleitecosta.libraryapi.api.service.impl;
 
+import br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.CatalogVersionRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookAvailabilityIndex;
+import br.com.victorleitecosta.libraryapi.api.service.BookField;
+import br.com.victorleitecosta.libraryapi.api.service.BookSearchIndex;
 import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.LibraryMetrics;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.BOOKS_BY_ISBN;
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.ISBN_EXISTS;
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.BOOK_OPERATIONS;
 import static org.springframework.data.domain.ExampleMatcher.StringMatcher.CONTAINING;
 import static org.springframework.data.domain.ExampleMatcher.matching;
 
 @Service
 public class BookServiceImpl implements BookService {
     private BookRepository repository;
+    private CatalogVersionRepository catalogVersion;
+    private BookSearchIndex searchIndex;
+    private BookAvailabilityIndex availabilityIndex;
+    private LibraryMetrics metrics;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, CatalogVersionRepository catalogVersion,
+                           BookSearchIndex searchIndex, BookAvailabilityIndex availabilityIndex,
+                           LibraryMetrics metrics) {
         this.repository = repository;
+        this.catalogVersion = catalogVersion;
+        this.searchIndex = searchIndex;
+        this.availabilityIndex = availabilityIndex;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void createCatalogVersion() {
+        catalogVersion.create();
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = {BOOKS_BY_ISBN, ISBN_EXISTS}, key = "#book.isbn", condition = "#book.isbn != null")
     public Book save(Book book) {
-        if (repository.existsByIsbn(book.getIsbn())) {
-            throw new BusinessException("Isbn já cadastrado.");
+        return metrics.time(BOOK_OPERATIONS, "save", () -> {
+            if (repository.existsByIsbn(book.getIsbn())) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            Book savedBook = repository.save(book);
+            catalogVersion.increment();
+            afterCommit(() -> searchIndex.index(savedBook));
+            return savedBook;
+        });
+    }
+
+    @Override
+    @Transactional
+    public List<Book> saveAll(List<Book> books) {
+        List<Book> savedBooks = repository.saveAll(books);
+        catalogVersion.increment();
+        savedBooks.forEach(book -> repository.evictByIsbn(book.getIsbn()));
+        afterCommit(() -> savedBooks.forEach(searchIndex::index));
+        return savedBooks;
+    }
+
+    /**
+     * Defers a search index change until the transaction commits, so that a
+     * write rolled back never shows up in the search results.
+     */
+    private static void afterCommit(Runnable indexChange) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexChange.run();
+            return;
         }
-        return repository.save(book);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                indexChange.run();
+            }
+        });
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Book> getById(Long id) {
         return this.repository.findById(id);
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = {BOOKS_BY_ISBN, ISBN_EXISTS}, key = "#book.isbn", condition = "#book.isbn != null")
     public void delete(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("O id do livro não pode ser nulo.");
         }
         this.repository.delete(book);
+        catalogVersion.increment();
+        afterCommit(() -> searchIndex.remove(book.getId()));
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = {BOOKS_BY_ISBN, ISBN_EXISTS}, key = "#book.isbn", condition = "#book.isbn != null")
     public Book update(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("O id do livro não pode ser nulo.");
         }
-        return this.repository.save(book);
+        Book updatedBook = this.repository.save(book);
+        catalogVersion.increment();
+        afterCommit(() -> searchIndex.index(updatedBook));
+        return updatedBook;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter,
+        Example<Book> example = example(filter);
+        return metrics.time(BOOK_OPERATIONS, "find", () -> repository.findAll(example, pageRequest));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> findApproximate(Book filter, Pageable pageRequest) {
+        Example<Book> example = example(filter);
+        return metrics.time(BOOK_OPERATIONS, "findApproximate",
+                () -> withTotal(repository.findSlice(example, pageRequest), repository.countCached(example)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findSlice(Book filter, Pageable pageRequest) {
+        Example<Book> example = example(filter);
+        return metrics.time(BOOK_OPERATIONS, "findSlice", () -> repository.findSlice(example, pageRequest));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> find(Book filter, Set<BookField> fields, Pageable pageRequest) {
+        Example<Book> example = example(filter);
+        return metrics.time(BOOK_OPERATIONS, "findFields", () -> PageableExecutionUtils.getPage(
+                repository.findSlice(example, attributes(fields), pageRequest).getContent(),
+                pageRequest,
+                () -> repository.count(example)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> findApproximate(Book filter, Set<BookField> fields, Pageable pageRequest) {
+        Example<Book> example = example(filter);
+        return metrics.time(BOOK_OPERATIONS, "findFieldsApproximate", () -> withTotal(
+                repository.findSlice(example, attributes(fields), pageRequest), repository.countCached(example)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Map<String, Object>> findSlice(Book filter, Set<BookField> fields, Pageable pageRequest) {
+        Example<Book> example = example(filter);
+        return metrics.time(BOOK_OPERATIONS, "findFieldsSlice",
+                () -> repository.findSlice(example, attributes(fields), pageRequest));
+    }
+
+    private static List<String> attributes(Set<BookField> fields) {
+        return fields.stream().map(BookField::getAttribute).collect(Collectors.toList());
+    }
+
+    private static Example<Book> example(Book filter) {
+        return Example.of(filter,
                 matching()
                         .withIgnoreCase()
                         .withIgnoreNullValues()
                         .withStringMatcher(CONTAINING));
-        return repository.findAll(example, pageRequest);
+    }
+
+    /**
+     * Page with a total that may be stale, but never below what the slice
+     * itself shows to exist.
+     */
+    private static <T> Page<T> withTotal(Slice<T> slice, long total) {
+        Pageable pageable = slice.getPageable();
+        long seen = (pageable.isPaged() ? pageable.getOffset() : 0)
+                + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        return new PageImpl<>(slice.getContent(), pageable, Math.max(total, seen));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Page<Book> search(String query, Pageable pageRequest) {
+        return metrics.time(BOOK_OPERATIONS, "search", () -> rankedSearch(query, pageRequest));
+    }
+
+    private Page<Book> rankedSearch(String query, Pageable pageRequest) {
+        Page<Long> ids = searchIndex.search(query, pageRequest);
+        Map<Long, Book> books = repository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> ranked = ids.getContent().stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(ranked, pageRequest, ids.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findAfter(Cursor after, int size) {
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Book> books;
+        if (after == null) {
+            books = repository.findFirstPage(limit);
+        } else if (after.getKey() == null) {
+            books = repository.findPageAfterUntitled(after.getId(), limit);
+        } else {
+            books = repository.findPageAfter(after.getKey(), after.getId(), limit);
+        }
+        boolean hasNext = books.size() > size;
+        return new SliceImpl<>(hasNext ? books.subList(0, size) : books, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+        return metrics.time(BOOK_OPERATIONS, "getByIsbn", () -> repository.findByIsbn(isbn));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Long> getVersion(Long id) {
+        return repository.findVersionById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long getCatalogVersion() {
+        return catalogVersion.findVersion().orElse(0L);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Long> getLoansVersion(Long id) {
+        return repository.findLoansVersionById(id);
+    }
+
+    @Override
+    @Transactional
+    public void markLoansChanged(Collection<Long> bookIds) {
+        if (!bookIds.isEmpty()) {
+            repository.incrementLoansVersion(bookIds);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> getBooksByIsbn(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return metrics.time(BOOK_OPERATIONS, "getByIsbnIn", () -> repository.findByIsbnIn(isbns));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookAvailabilityDTO> getAvailability(Collection<String> isbns) {
+        List<BookAvailabilityDTO> availability = repository.findAvailabilityByIsbnIn(isbns);
+        availability.forEach(book -> book.setAvailable(!availabilityIndex.isLoaned(book.getId())));
+        return availability;
     }
 }
@@ -1,35 +1,47 @@
 package br.com.victorleitecosta.libraryapi.api.service.impl;
 
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxStatus;
+import br.com.victorleitecosta.libraryapi.api.model.repository.OutboxMailRepository;
 import br.com.victorleitecosta.libraryapi.api.service.EmailService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+/**
+ * Enqueues one outbox mail per recipient. The mails are delivered later by
+ * {@link br.com.victorleitecosta.libraryapi.api.service.MailDispatcher}.
+ */
 @Service
 @RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService {
 
-    @Value("${application.mail.default-remetent}")
-    private String remetent;
-
-    private final JavaMailSender javaMailSender;
+    static final String LATE_LOAN_SUBJECT = "Livro com empréstimo atrasado.";
 
+    private final OutboxMailRepository repository;
 
     @Override
-    public void sendMails(String message, List<String> mailsList) {
-
-        String[] mails = mailsList.toArray(new String[mailsList.size()]);
+    public void sendMails(Map<String, String> messagesByRecipient) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMail> mails = messagesByRecipient.entrySet().stream()
+                .map(entry -> toOutboxMail(entry.getKey(), entry.getValue(), now))
+                .collect(Collectors.toList());
 
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-        mailMessage.setFrom(remetent);
-        mailMessage.setSubject("Livro com empréstimo atrasado.");
-        mailMessage.setText(message);
-        mailMessage.setTo(mails);
+        repository.saveAll(mails);
+    }
 
-        javaMailSender.send(mailMessage);
+    private static OutboxMail toOutboxMail(String recipient, String message, LocalDateTime now) {
+        return OutboxMail.builder()
+                .recipient(recipient)
+                .subject(LATE_LOAN_SUBJECT)
+                .body(message)
+                .status(OutboxStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
     }
 }
@@ -0,0 +1,125 @@
+package br.com.victorleitecosta.libraryapi.api.service.impl;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import br.com.victorleitecosta.libraryapi.api.service.DataFormat;
+import br.com.victorleitecosta.libraryapi.api.service.ExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+    private static final int CLEAR_INTERVAL = 500;
+    private static final String[] BOOK_COLUMNS = {"id", "title", "author", "isbn"};
+    private static final String[] LOAN_COLUMNS = {"id", "customer", "customerEmail", "isbn", "loanDate", "returned"};
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(DataFormat format, OutputStream output) throws IOException {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            write(format, output, BOOK_COLUMNS, books.map(this::toRow).iterator());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportLoans(DataFormat format, OutputStream output) throws IOException {
+        try (Stream<Loan> loans = loanRepository.streamAll()) {
+            write(format, output, LOAN_COLUMNS, loans.map(this::toRow).iterator());
+        }
+    }
+
+    private void write(DataFormat format, OutputStream output, String[] columns,
+                       Iterator<Map<String, Object>> rows) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+        SequenceWriter json = format == DataFormat.NDJSON
+                ? objectMapper.writer().withRootValueSeparator("\n").writeValues(writer)
+                : null;
+        if (format == DataFormat.CSV) {
+            writer.write(String.join(",", columns));
+            writer.write('\n');
+        }
+
+        long count = 0;
+        while (rows.hasNext()) {
+            Map<String, Object> row = rows.next();
+            if (json != null) {
+                json.write(row);
+            } else {
+                writeCsv(writer, columns, row);
+            }
+            if (++count % CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+                writer.flush();
+            }
+        }
+        if (json != null) {
+            json.flush();
+            if (count > 0) {
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(Writer writer, String[] columns, Map<String, Object> row) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = row.get(columns[i]);
+            if (value != null) {
+                writer.write(escapeCsv(value.toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private Map<String, Object> toRow(Book book) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", book.getId());
+        row.put("title", book.getTitle());
+        row.put("author", book.getAuthor());
+        row.put("isbn", book.getIsbn());
+        return row;
+    }
+
+    private Map<String, Object> toRow(Loan loan) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", loan.getId());
+        row.put("customer", loan.getCustomer());
+        row.put("customerEmail", loan.getCustomerEmail());
+        row.put("isbn", loan.getBook() == null ? null : loan.getBook().getIsbn());
+        row.put("loanDate", loan.getLoanDate() == null ? null : loan.getLoanDate().toString());
+        row.put("returned", loan.getReturned());
+        return row;
+    }
+}
@@ -1,62 +1,468 @@
 package br.com.victorleitecosta.libraryapi.api.service.impl;
 
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
+import br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchStatus;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanFilterDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanStateDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
 import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookAvailabilityIndex;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.CirculationRollups;
+import br.com.victorleitecosta.libraryapi.api.service.LibraryMetrics;
+import br.com.victorleitecosta.libraryapi.api.service.LoanDueScheduler;
 import br.com.victorleitecosta.libraryapi.api.service.LoanService;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.LOAN_CONFLICTS;
+import static br.com.victorleitecosta.libraryapi.config.MetricsConfig.LOAN_OPERATIONS;
 
-import static java.time.LocalDate.now;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
     private LoanRepository repository;
+    private BookService bookService;
+    private BookAvailabilityIndex availabilityIndex;
+    private LoanDueScheduler dueScheduler;
+    private CirculationRollups rollups;
+    private int loanDays;
+    private int maxLoanDays;
+    private LibraryMetrics metrics;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    public LoanServiceImpl(LoanRepository repository,
+                           BookService bookService,
+                           BookAvailabilityIndex availabilityIndex,
+                           LoanDueScheduler dueScheduler,
+                           CirculationRollups rollups,
+                           LibraryMetrics metrics,
+                           @Value("${application.loans.loan-days:4}") int loanDays,
+                           @Value("${application.loans.max-loan-days:60}") int maxLoanDays) {
         this.repository = repository;
+        this.bookService = bookService;
+        this.availabilityIndex = availabilityIndex;
+        this.dueScheduler = dueScheduler;
+        this.rollups = rollups;
+        this.loanDays = loanDays;
+        this.maxLoanDays = maxLoanDays;
+        this.metrics = metrics;
     }
 
     @Override
+    @Transactional
     public Loan save(Loan loan) {
-        if (repository.existsByBookAndReturnedIsNullOrReturnedIsFalse(loan.getBook())) {
+        return metrics.time(LOAN_OPERATIONS, "save", () -> saveLoan(loan));
+    }
+
+    private Loan saveLoan(Loan loan) {
+        loan.setDueAt(dueAt(loan.getDueAt(), LocalDateTime.now()));
+
+        Long bookId = loan.getBook().getId();
+        if (!availabilityIndex.tryMarkLoaned(bookId)) {
+            metrics.increment(LOAN_CONFLICTS, 1);
             throw new BusinessException("Book already loaned");
         }
-        return repository.save(loan);
+        Loan savedLoan = releaseUnlessCommitted(List.of(bookId), () -> {
+            Loan saved = saveAndFlush(() -> repository.save(loan));
+            rollups.recordLoans(List.of(saved));
+            bookService.markLoansChanged(List.of(bookId));
+            return saved;
+        });
+        dueScheduler.schedule(savedLoan.getId(), savedLoan.getDueAt());
+        return savedLoan;
+    }
+
+    /**
+     * Inserts or updates the loans and flushes them, so that the unique index
+     * on open loans rejects a book another node lent in the meantime: the
+     * availability bitmap only knows the loans made on this node.
+     */
+    private <T> T saveAndFlush(Supplier<T> save) {
+        try {
+            T saved = save.get();
+            repository.flush();
+            return saved;
+        } catch (DataIntegrityViolationException ex) {
+            if (!isOpenLoanConflict(ex)) {
+                throw ex;
+            }
+            metrics.increment(LOAN_CONFLICTS, 1);
+            throw new BusinessException("Book already loaned");
+        }
+    }
+
+    private static boolean isOpenLoanConflict(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(Loan.OPEN_BOOK_INDEX);
+    }
+
+    /**
+     * Gives the books reserved in the availability index back unless the
+     * transaction commits, so a rolled back loan never keeps its book loaned.
+     */
+    private <T> T releaseUnlessCommitted(Collection<Long> bookIds, Supplier<T> work) {
+        Runnable release = () -> bookIds.forEach(availabilityIndex::markReturned);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                return work.get();
+            } catch (RuntimeException ex) {
+                release.run();
+                throw ex;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release.run();
+                }
+            }
+        });
+        return work.get();
+    }
+
+    /**
+     * Defers an availability change until the transaction commits, so a
+     * return rolled back never frees its book.
+     */
+    private static void afterCommit(Runnable indexChange) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexChange.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                indexChange.run();
+            }
+        });
+    }
+
+    private LocalDateTime dueAt(LocalDateTime requested, LocalDateTime now) {
+        if (requested == null) {
+            return now.plusDays(loanDays);
+        }
+        if (!requested.isAfter(now) || requested.isAfter(now.plusDays(maxLoanDays))) {
+            throw new BusinessException("Prazo do empréstimo inválido.");
+        }
+        return requested;
+    }
+
+    @Override
+    @Transactional
+    public List<LoanBatchItemDTO> saveAll(List<LoanDTO> loans) {
+        return metrics.time(LOAN_OPERATIONS, "saveAll", () -> saveLoans(loans));
+    }
+
+    private List<LoanBatchItemDTO> saveLoans(List<LoanDTO> requests) {
+        Set<String> isbns = requests.stream()
+                .map(LoanDTO::getIsbn)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Book> books = bookService.getBooksByIsbn(isbns).stream()
+                .collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LoanBatchItemDTO> results = new ArrayList<>(requests.size());
+        List<LoanBatchItemDTO> pendingResults = new ArrayList<>();
+        List<Loan> pending = new ArrayList<>();
+        for (LoanDTO request : requests) {
+            LoanBatchItemDTO result = LoanBatchItemDTO.builder().isbn(request.getIsbn()).build();
+            results.add(result);
+            Book book = books.get(request.getIsbn());
+            if (book == null) {
+                reject(result, LoanBatchStatus.BOOK_NOT_FOUND, "Book not found for passed isbn");
+                continue;
+            }
+            LocalDateTime dueAt;
+            try {
+                dueAt = dueAt(request.getDays() == null ? null : now.plusDays(request.getDays()), now);
+            } catch (BusinessException ex) {
+                reject(result, LoanBatchStatus.INVALID_DUE_DATE, ex.getMessage());
+                continue;
+            }
+            pending.add(Loan.builder()
+                    .book(book)
+                    .customer(request.getCostumer())
+                    .customerEmail(request.getEmail())
+                    .loanDate(now.toLocalDate())
+                    .dueAt(dueAt)
+                    .build());
+            pendingResults.add(result);
+        }
+
+        Set<Long> marked = availabilityIndex.tryMarkLoaned(pending.stream()
+                .map(loan -> loan.getBook().getId())
+                .collect(Collectors.toList()));
+        if (!marked.isEmpty()) {
+            marked.removeAll(repository.findOpenBookIds(marked));
+        }
+        List<Loan> accepted = new ArrayList<>(marked.size());
+        List<LoanBatchItemDTO> acceptedResults = new ArrayList<>(marked.size());
+        for (int i = 0; i < pending.size(); i++) {
+            if (marked.remove(pending.get(i).getBook().getId())) {
+                accepted.add(pending.get(i));
+                acceptedResults.add(pendingResults.get(i));
+            } else {
+                reject(pendingResults.get(i), LoanBatchStatus.BOOK_ALREADY_LOANED, "Book already loaned");
+            }
+        }
+        if (pending.size() > accepted.size()) {
+            metrics.increment(LOAN_CONFLICTS, pending.size() - accepted.size());
+        }
+        if (accepted.isEmpty()) {
+            return results;
+        }
+
+        Set<Long> acceptedBookIds = accepted.stream()
+                .map(loan -> loan.getBook().getId())
+                .collect(Collectors.toSet());
+        List<Loan> savedLoans = releaseUnlessCommitted(acceptedBookIds, () -> {
+            List<Loan> saved = saveAndFlush(() -> repository.saveAll(accepted));
+            rollups.recordLoans(saved);
+            bookService.markLoansChanged(acceptedBookIds);
+            return saved;
+        });
+        for (int i = 0; i < savedLoans.size(); i++) {
+            Loan savedLoan = savedLoans.get(i);
+            LoanBatchItemDTO result = acceptedResults.get(i);
+            result.setId(savedLoan.getId());
+            result.setStatus(LoanBatchStatus.CREATED);
+            dueScheduler.schedule(savedLoan.getId(), savedLoan.getDueAt());
+        }
+        return results;
     }
 
     @Override
+    @Transactional
+    public List<LoanBatchItemDTO> returnAll(List<Long> loanIds) {
+        return metrics.time(LOAN_OPERATIONS, "returnAll", () -> returnLoans(loanIds));
+    }
+
+    private List<LoanBatchItemDTO> returnLoans(List<Long> loanIds) {
+        Set<Long> ids = new LinkedHashSet<>(loanIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, LoanStateDTO> states = repository.findStatesForUpdateByIdIn(ids).stream()
+                .collect(Collectors.toMap(LoanStateDTO::getId, Function.identity()));
+
+        List<LoanBatchItemDTO> results = new ArrayList<>(ids.size());
+        List<LoanStateDTO> open = new ArrayList<>();
+        for (Long id : ids) {
+            LoanBatchItemDTO result = LoanBatchItemDTO.builder().id(id).build();
+            results.add(result);
+            LoanStateDTO state = states.get(id);
+            if (state == null) {
+                reject(result, LoanBatchStatus.LOAN_NOT_FOUND, "Loan not found");
+            } else if (Boolean.TRUE.equals(state.getReturned())) {
+                reject(result, LoanBatchStatus.ALREADY_RETURNED, "Loan already returned");
+            } else {
+                result.setStatus(LoanBatchStatus.RETURNED);
+                open.add(state);
+            }
+        }
+        if (!open.isEmpty()) {
+            int returned = repository.markReturned(open.stream().map(LoanStateDTO::getId).collect(Collectors.toList()));
+            if (returned != open.size()) {
+                throw new ConcurrencyFailureException(
+                        "Expected to return " + open.size() + " loans but " + returned + " were still open");
+            }
+            rollups.recordReturns(open.stream()
+                    .filter(state -> state.getCustomer() != null)
+                    .collect(Collectors.groupingBy(LoanStateDTO::getCustomer, Collectors.counting())));
+            afterCommit(() -> open.forEach(state -> availabilityIndex.markReturned(state.getBookId())));
+            open.forEach(state -> dueScheduler.cancel(state.getId()));
+        }
+        return results;
+    }
+
+    private static void reject(LoanBatchItemDTO result, LoanBatchStatus status, String message) {
+        result.setStatus(status);
+        result.setMessage(message);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Loan> getById(Long id) {
-        return repository.findById(id);
+        return metrics.time(LOAN_OPERATIONS, "getById", () -> repository.findById(id));
     }
 
     @Override
+    @Transactional
     public Loan update(Loan loan) {
-        return repository.save(loan);
+        return metrics.time(LOAN_OPERATIONS, "update", () -> updateLoan(loan));
+    }
+
+    private Loan updateLoan(Loan loan) {
+        if (Boolean.TRUE.equals(loan.getReturned())) {
+            loan.setNextReminderAt(null);
+        }
+        boolean wasReturned = loan.getId() != null && repository.findStatesByIdIn(List.of(loan.getId())).stream()
+                .anyMatch(state -> Boolean.TRUE.equals(state.getReturned()));
+        boolean returned = Boolean.TRUE.equals(loan.getReturned());
+        Long bookId = loan.getBook().getId();
+        if (wasReturned && !returned) {
+            if (!availabilityIndex.tryMarkLoaned(bookId)) {
+                metrics.increment(LOAN_CONFLICTS, 1);
+                throw new BusinessException("Book already loaned");
+            }
+            return releaseUnlessCommitted(List.of(bookId), () -> saveUpdate(loan, wasReturned));
+        }
+        Loan updatedLoan = saveUpdate(loan, wasReturned);
+        if (returned) {
+            afterCommit(() -> availabilityIndex.markReturned(bookId));
+            dueScheduler.cancel(updatedLoan.getId());
+        }
+        return updatedLoan;
+    }
+
+    private Loan saveUpdate(Loan loan, boolean wasReturned) {
+        Loan updatedLoan = saveAndFlush(() -> repository.save(loan));
+        bookService.markLoansChanged(List.of(updatedLoan.getBook().getId()));
+        boolean returned = Boolean.TRUE.equals(updatedLoan.getReturned());
+        if (returned != wasReturned && updatedLoan.getCustomer() != null) {
+            rollups.recordReturns(Map.of(updatedLoan.getCustomer(), returned ? 1L : -1L));
+        }
+        return updatedLoan;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
-        return repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable);
+        return metrics.time(LOAN_OPERATIONS, "find",
+                () -> repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> findDetails(LoanFilterDTO filterDTO, Pageable pageable) {
+        return metrics.time(LOAN_OPERATIONS, "findDetails",
+                () -> repository.findDetailsByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> findDetailsApproximate(LoanFilterDTO filterDTO, Pageable pageable) {
+        return metrics.time(LOAN_OPERATIONS, "findDetailsApproximate", () -> withTotal(
+                repository.findDetailsSliceByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable),
+                repository.countCachedByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer())));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<LoanDTO> findDetailsSlice(LoanFilterDTO filterDTO, Pageable pageable) {
+        return metrics.time(LOAN_OPERATIONS, "findDetailsSlice",
+                () -> repository.findDetailsSliceByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable));
+    }
+
+    private static <T> Page<T> withTotal(Slice<T> slice, long total) {
+        Pageable pageable = slice.getPageable();
+        long seen = (pageable.isPaged() ? pageable.getOffset() : 0)
+                + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        return new PageImpl<>(slice.getContent(), pageable, Math.max(total, seen));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> findAfter(LoanFilterDTO filterDTO, Cursor after, int size) {
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Loan> loans;
+        if (after == null) {
+            loans = repository.findFirstPage(filterDTO.getIsbn(), filterDTO.getCustomer(), limit);
+        } else if (after.getKey() == null) {
+            loans = repository.findPageAfterUndated(filterDTO.getIsbn(), filterDTO.getCustomer(), after.getId(), limit);
+        } else {
+            loans = repository.findPageAfter(filterDTO.getIsbn(), filterDTO.getCustomer(),
+                    after.keyAsDate(), after.getId(), limit);
+        }
+        boolean hasNext = loans.size() > size;
+        return new SliceImpl<>(hasNext ? loans.subList(0, size) : loans, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
         return repository.findByBook(book, pageable);
     }
 
     @Override
-    public List<Loan> getAllLateLoans() {
-        final Integer loanDays = 4;
-        LocalDate threeDaysAgo = now().minusDays(loanDays);
-        return repository.findByLoanDateLessThanAndReturnedIsNullOrReturnedIsFalse(threeDaysAgo);
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> getLoanDetailsByBook(Long bookId, Pageable pageable) {
+        return repository.findDetailsByBookId(bookId, pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<LateCustomerDTO> getCustomersToNotifyAfter(LocalDateTime watermark, LocalDateTime dueBefore,
+                                                           LocalDate reminderDate, String lastEmail, String upperEmail, int size) {
+        return repository.findCustomersToNotifyAfter(
+                watermark, dueBefore, reminderDate, lastEmail, upperEmail, PageRequest.of(0, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<LateLoanDTO> getLateLoansByCustomers(LocalDateTime dueBefore, Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return repository.findLateLoansByCustomerEmails(dueBefore, emails);
+    }
+
+    /**
+     * Claims the loans in one update tagged with {@code claim} and reads back
+     * the ones carrying that tag, so loans claimed by another node are left
+     * out instead of guessed from the dates.
+     */
+    @Override
+    @Transactional
+    public List<LateLoanDTO> claimLoansToRemind(Collection<Long> loanIds, String claim,
+                                                LocalDate notifiedAt, LocalDate nextReminderAt) {
+        if (loanIds.isEmpty() || repository.claimFirstNotices(loanIds, claim, notifiedAt, nextReminderAt) == 0) {
+            return Collections.emptyList();
+        }
+        return repository.findClaimedLoans(loanIds, claim);
+    }
+
+    @Override
+    public void markNotified(Collection<Long> loanIds, LocalDate notifiedAt, LocalDate nextReminderAt) {
+        if (!loanIds.isEmpty()) {
+            repository.markNotified(loanIds, notifiedAt, nextReminderAt);
+        }
     }
 }
@@ -0,0 +1,103 @@
+package br.com.victorleitecosta.libraryapi.api.service.impl;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.DailyLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookDailyLoansRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.CustomerLoansRepository;
+import br.com.victorleitecosta.libraryapi.api.service.CirculationRollups;
+import br.com.victorleitecosta.libraryapi.api.service.JobLockService;
+import br.com.victorleitecosta.libraryapi.api.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+
+@Service
+@Slf4j
+public class ReportServiceImpl implements ReportService {
+
+    static final String ROLLUPS_JOB = "circulationRollups";
+
+    private final BookDailyLoansRepository dailyRepository;
+    private final CustomerLoansRepository customerRepository;
+    private final CirculationRollups rollups;
+    private final JobLockService jobLockService;
+    private final boolean backfillOnStartup;
+    private final Duration lease;
+
+    public ReportServiceImpl(BookDailyLoansRepository dailyRepository,
+                             CustomerLoansRepository customerRepository,
+                             CirculationRollups rollups,
+                             JobLockService jobLockService,
+                             @Value("${application.reports.backfill-on-startup:true}") boolean backfillOnStartup,
+                             @Value("${application.reports.backfill-lease:3600000}") long lease) {
+        this.dailyRepository = dailyRepository;
+        this.customerRepository = customerRepository;
+        this.rollups = rollups;
+        this.jobLockService = jobLockService;
+        this.backfillOnStartup = backfillOnStartup;
+        this.lease = Duration.ofMillis(lease);
+    }
+
+    /**
+     * Fills the rollups from the loans made before they existed. Later
+     * starts find them filled and skip it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (backfillOnStartup && rollups.isEmpty() && !rebuildRollups()) {
+            log.info(" circulation rollups backfill left to another node ");
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookLoansDTO> getMostBorrowed(LocalDate from, LocalDate to, int size) {
+        return dailyRepository.findMostBorrowed(from, to, PageRequest.of(0, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DailyLoansDTO> getDailyLoans(LocalDate from, LocalDate to) {
+        return dailyRepository.findDailyLoans(from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<CustomerActivityDTO> getMostActiveCustomers(Pageable pageable) {
+        return customerRepository.findMostActive(pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CustomerActivityDTO> getCustomerActivity(String customer) {
+        return customerRepository.findActivity(customer);
+    }
+
+    @Override
+    public boolean rebuildRollups() {
+        if (!jobLockService.tryLock(ROLLUPS_JOB, lease)) {
+            return false;
+        }
+        ScheduledFuture<?> renewal = jobLockService.keepRenewed(ROLLUPS_JOB, lease);
+        try {
+            rollups.rebuild();
+            return true;
+        } finally {
+            renewal.cancel(false);
+            jobLockService.unlock(ROLLUPS_JOB);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.victorleitecosta.libraryapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+@EnableCaching
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    public static final String BOOKS_BY_ISBN = "booksByIsbn";
+    public static final String ISBN_EXISTS = "isbnExists";
+    public static final String BOOK_COUNTS = "bookCounts";
+    public static final String LOAN_COUNTS = "loanCounts";
+
+    /**
+     * Caffeine caches configured by the {@code spring.cache} properties,
+     * behind a proxy that defers puts and evictions to the commit of the
+     * surrounding transaction: a reader can no longer cache the row a
+     * rolled back or still running write is about to change.
+     * <p>
+     * The totals of the list endpoints asked with {@code count=approximate}
+     * are never evicted, only expire, so the staleness is what a caller may see.
+     */
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties,
+                                     @Value("${application.pagination.count-staleness:60s}") Duration staleness) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        String spec = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(spec)) {
+            cacheManager.setCacheSpecification(spec);
+        }
+        cacheManager.setCacheNames(cacheProperties.getCacheNames());
+        cacheManager.registerCustomCache(BOOK_COUNTS, countCache(staleness));
+        cacheManager.registerCustomCache(LOAN_COUNTS, countCache(staleness));
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    private static Cache<Object, Object> countCache(Duration staleness) {
+        return Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(staleness)
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.victorleitecosta.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Names of the domain metrics. They are part of the alerting contract, so
+ * they must not change; new dimensions go in tags.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /** Timer tagged with {@code operation} and {@code outcome}. */
+    public static final String BOOK_OPERATIONS = "library.books";
+    /** Timer tagged with {@code operation} and {@code outcome}. */
+    public static final String LOAN_OPERATIONS = "library.loans";
+    /** Loans refused because the book was already loaned. */
+    public static final String LOAN_CONFLICTS = "library.loans.conflicts";
+    /** Timer of a late loans job run, tagged with {@code mode}. */
+    public static final String LATE_LOANS_RUN = "library.lateloans.run";
+    /** Customers per chunk of the late loans job. */
+    public static final String LATE_LOANS_CHUNK = "library.lateloans.chunk.size";
+    /** Loans included in the digests sent by the late loans job and the reminders. */
+    public static final String LATE_LOANS_NOTIFIED = "library.lateloans.notified";
+    /** Timer of a batch sent through one SMTP connection, tagged with {@code outcome}. */
+    public static final String MAIL_SEND = "library.mail.send";
+    /** Mails per SMTP batch. */
+    public static final String MAIL_BATCH = "library.mail.batch.size";
+    /** Mails that failed, tagged with {@code outcome} retry or failed. */
+    public static final String MAIL_FAILURES = "library.mail.failures";
+
+    @Bean
+    public MeterRegistryCustomizer<MeterRegistry> commonTags(@Value("${spring.application.name:library-api}") String application) {
+        return registry -> registry.config().commonTags("application", application);
+    }
+}
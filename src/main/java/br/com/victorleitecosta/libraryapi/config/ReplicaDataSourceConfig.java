@@ -0,0 +1,56 @@
+package br.com.victorleitecosta.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Read replica for the {@code @Transactional(readOnly = true)} service
+ * methods. Only active when {@code application.datasource.replica.url} is
+ * set; otherwise the auto-configured data source serves everything.
+ * <p>
+ * Both pools live inside the single {@code dataSource} bean: Boot runs its
+ * schema initializer on every {@link DataSource} bean and expects exactly one.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${application.datasource.replica.url}") String url,
+                                 @Value("${application.datasource.replica.username:}") String username,
+                                 @Value("${application.datasource.replica.password:}") String password,
+                                 @Value("${application.datasource.replica.max-lag:1s}") Duration maxLag) {
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(StringUtils.hasText(username) ? username : properties.determineUsername())
+                .password(StringUtils.hasText(password) ? password : properties.determinePassword())
+                .build();
+        binder.bind("application.datasource.replica.hikari", Bindable.ofInstance(replica));
+
+        ReadWriteRoutingDataSource routing =
+                new ReadWriteRoutingDataSource(primary, replica, maxLag, Clock.systemDefaultZone());
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
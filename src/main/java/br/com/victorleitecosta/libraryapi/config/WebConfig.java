@@ -0,0 +1,15 @@
+package br.com.victorleitecosta.libraryapi.config;
+
+import br.com.victorleitecosta.libraryapi.monitoring.FlightRecorderInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new FlightRecorderInterceptor()).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,32 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import br.com.victorleitecosta.libraryapi.api.service.ReportService;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/rollups}: POST recomputes the circulation rollups from
+ * the whole loan history; 409 while another node is doing it. Loans made
+ * meanwhile wait for the rebuild, so this is kept off the public API.
+ */
+@Component
+@WebEndpoint(id = "rollups")
+public class CirculationRollupsEndpoint {
+
+    private static final int STATUS_CONFLICT = 409;
+
+    private final ReportService reportService;
+
+    public CirculationRollupsEndpoint(ReportService reportService) {
+        this.reportService = reportService;
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Void> rebuild() {
+        return reportService.rebuildRollups()
+                ? new WebEndpointResponse<>(WebEndpointResponse.STATUS_NO_CONTENT)
+                : new WebEndpointResponse<>(STATUS_CONFLICT);
+    }
+}
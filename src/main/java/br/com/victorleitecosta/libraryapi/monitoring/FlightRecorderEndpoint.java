@@ -0,0 +1,166 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * {@code /actuator/jfr}: on demand Java Flight Recorder recordings.
+ * <ul>
+ * <li>POST starts a recording, optionally with {@code duration} in seconds
+ * (capped by {@code application.jfr.max-duration}) and {@code settings}
+ * ({@code default} or {@code profile}); 409 while one is running.</li>
+ * <li>GET shows the current recording, DELETE stops it.</li>
+ * <li>GET {@code /actuator/jfr/{id}} streams the {@code .jfr} file, with what
+ * was recorded so far when it is still running.</li>
+ * </ul>
+ * One recording is kept at a time; starting a new one discards the last.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@Slf4j
+public class FlightRecorderEndpoint {
+
+    private static final String DEFAULT_SETTINGS = "default";
+    private static final int STATUS_CONFLICT = 409;
+
+    private final Duration defaultDuration;
+    private final Duration maxDuration;
+    private Recording recording;
+
+    public FlightRecorderEndpoint(@Value("${application.jfr.default-duration:60}") long defaultDuration,
+                                  @Value("${application.jfr.max-duration:600}") long maxDuration) {
+        this.defaultDuration = Duration.ofSeconds(defaultDuration);
+        this.maxDuration = Duration.ofSeconds(maxDuration);
+    }
+
+    @WriteOperation
+    public synchronized WebEndpointResponse<RecordingStatus> start(@Nullable Long duration, @Nullable String settings) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return new WebEndpointResponse<>(status(recording), STATUS_CONFLICT);
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings == null ? DEFAULT_SETTINGS : settings);
+        } catch (IOException | ParseException ex) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        Duration requested = duration == null || duration <= 0 ? defaultDuration : Duration.ofSeconds(duration);
+
+        close();
+        recording = new Recording(configuration);
+        recording.setName("library-api-" + Instant.now().getEpochSecond());
+        recording.setDuration(requested.compareTo(maxDuration) > 0 ? maxDuration : requested);
+        recording.setToDisk(true);
+        recording.start();
+        log.info(" started flight recording {} for {} with {} settings ", recording.getId(), recording.getDuration(), configuration.getName());
+        return new WebEndpointResponse<>(status(recording));
+    }
+
+    @ReadOperation
+    public synchronized WebEndpointResponse<RecordingStatus> current() {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        return new WebEndpointResponse<>(status(recording));
+    }
+
+    @DeleteOperation
+    public synchronized WebEndpointResponse<RecordingStatus> stop() {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        return new WebEndpointResponse<>(status(recording));
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> download(@Selector long id) throws IOException {
+        if (recording == null || recording.getId() != id
+                || recording.getState() == RecordingState.NEW || recording.getState() == RecordingState.CLOSED) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path file = Files.createTempFile(recording.getName() + "-", ".jfr");
+        recording.dump(file);
+        return new WebEndpointResponse<>(new TemporaryFileSystemResource(file));
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private static RecordingStatus status(Recording recording) {
+        return RecordingStatus.builder()
+                .id(recording.getId())
+                .name(recording.getName())
+                .state(recording.getState().name())
+                .startTime(recording.getStartTime())
+                .stopTime(recording.getStopTime())
+                .duration(recording.getDuration())
+                .size(recording.getSize())
+                .build();
+    }
+
+    @Data
+    @Builder
+    public static class RecordingStatus {
+        private long id;
+        private String name;
+        private String state;
+        private Instant startTime;
+        private Instant stopTime;
+        private Duration duration;
+        private long size;
+    }
+
+    /**
+     * Deletes the dump once it has been streamed.
+     */
+    private static class TemporaryFileSystemResource extends FileSystemResource {
+
+        private TemporaryFileSystemResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    Files.deleteIfExists(getFile().toPath());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Marks each API request on the flight recorder timeline with an
+ * {@link HttpRequestEvent}. When no recording is running the event is not
+ * even created.
+ */
+public class FlightRecorderInterceptor implements HandlerInterceptor {
+
+    private static final String EVENT_ATTRIBUTE = FlightRecorderInterceptor.class.getName() + ".event";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpRequestEvent event = new HttpRequestEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            request.setAttribute(EVENT_ATTRIBUTE, event);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        HttpRequestEvent event = (HttpRequestEvent) request.getAttribute(EVENT_ATTRIBUTE);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            event.method = request.getMethod();
+            event.path = pattern != null ? pattern.toString() : request.getRequestURI();
+            event.handler = handler instanceof HandlerMethod
+                    ? ((HandlerMethod) handler).getBeanType().getSimpleName() + "." + ((HandlerMethod) handler).getMethod().getName()
+                    : null;
+            event.status = response.getStatus();
+            event.commit();
+        }
+    }
+}
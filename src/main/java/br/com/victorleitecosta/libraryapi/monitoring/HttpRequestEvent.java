@@ -0,0 +1,27 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.HttpRequest")
+@Label("HTTP Request")
+@Category({"Library API", "HTTP"})
+@Description("A request handled by one of the API controllers")
+public class HttpRequestEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    @Description("Mapped path pattern, without the ids of the request")
+    public String path;
+
+    @Label("Handler")
+    public String handler;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,20 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.LateLoansChunk")
+@Label("Late Loans Chunk")
+@Category({"Library API", "Jobs"})
+@Description("A chunk of customers notified by the late loans job")
+public class LateLoansChunkEvent extends Event {
+
+    @Label("Customers")
+    public int customers;
+
+    @Label("Loans")
+    public int loans;
+}
@@ -0,0 +1,17 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.LateLoansJob")
+@Label("Late Loans Job")
+@Category({"Library API", "Jobs"})
+@Description("A run of the late loans job on this node")
+public class LateLoansJobEvent extends Event {
+
+    @Label("Mode")
+    public String mode;
+}
@@ -0,0 +1,160 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import lombok.Builder;
+import lombok.Data;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@code /actuator/queries}: Hibernate statistics per query, entity and
+ * collection, with the heaviest first, plus the recent slow statements.
+ * Needs {@code hibernate.generate_statistics}; a DELETE starts over.
+ */
+@Component
+@Endpoint(id = "queries")
+public class QueryStatisticsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final Statistics statistics;
+    private final SlowQueryLog slowQueryLog;
+
+    public QueryStatisticsEndpoint(EntityManagerFactory entityManagerFactory, SlowQueryLog slowQueryLog) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public QueryReport queries(@Nullable Integer limit) {
+        int max = limit == null ? DEFAULT_LIMIT : limit;
+        return QueryReport.builder()
+                .statisticsEnabled(statistics.isStatisticsEnabled())
+                .since(Instant.ofEpochMilli(statistics.getStartTime()))
+                .queryExecutionCount(statistics.getQueryExecutionCount())
+                .queryExecutionMaxTime(statistics.getQueryExecutionMaxTime())
+                .slowestQuery(statistics.getQueryExecutionMaxTimeQueryString())
+                .prepareStatementCount(statistics.getPrepareStatementCount())
+                .entityLoadCount(statistics.getEntityLoadCount())
+                .entityFetchCount(statistics.getEntityFetchCount())
+                .collectionFetchCount(statistics.getCollectionFetchCount())
+                .queries(Arrays.stream(statistics.getQueries())
+                        .map(this::query)
+                        .sorted(Comparator.comparingLong(QueryStats::getTotalTime).reversed())
+                        .limit(max)
+                        .collect(Collectors.toList()))
+                .entities(Arrays.stream(statistics.getEntityNames())
+                        .map(this::entity)
+                        .sorted(Comparator.comparingLong((EntityStats stats) -> stats.getLoads() + stats.getFetches()).reversed())
+                        .collect(Collectors.toList()))
+                .collections(Arrays.stream(statistics.getCollectionRoleNames())
+                        .map(this::collection)
+                        .sorted(Comparator.comparingLong(CollectionStats::getFetches).reversed())
+                        .collect(Collectors.toList()))
+                .slowQueries(slowQueryLog.getRecent())
+                .build();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.clear();
+        slowQueryLog.clear();
+    }
+
+    private QueryStats query(String hql) {
+        QueryStatistics stats = statistics.getQueryStatistics(hql);
+        return QueryStats.builder()
+                .query(hql)
+                .executionCount(stats.getExecutionCount())
+                .meanTime(stats.getExecutionAvgTime())
+                .maxTime(stats.getExecutionMaxTime())
+                .minTime(stats.getExecutionMinTime())
+                .totalTime(stats.getExecutionTotalTime())
+                .rows(stats.getExecutionRowCount())
+                .build();
+    }
+
+    private EntityStats entity(String name) {
+        EntityStatistics stats = statistics.getEntityStatistics(name);
+        return EntityStats.builder()
+                .entity(name)
+                .loads(stats.getLoadCount())
+                .fetches(stats.getFetchCount())
+                .inserts(stats.getInsertCount())
+                .updates(stats.getUpdateCount())
+                .deletes(stats.getDeleteCount())
+                .build();
+    }
+
+    private CollectionStats collection(String role) {
+        CollectionStatistics stats = statistics.getCollectionStatistics(role);
+        return CollectionStats.builder()
+                .role(role)
+                .loads(stats.getLoadCount())
+                .fetches(stats.getFetchCount())
+                .build();
+    }
+
+    @Data
+    @Builder
+    public static class QueryReport {
+        private boolean statisticsEnabled;
+        private Instant since;
+        private long queryExecutionCount;
+        private long queryExecutionMaxTime;
+        private String slowestQuery;
+        private long prepareStatementCount;
+        private long entityLoadCount;
+        private long entityFetchCount;
+        private long collectionFetchCount;
+        private List<QueryStats> queries;
+        private List<EntityStats> entities;
+        private List<CollectionStats> collections;
+        private List<SlowQueryLog.SlowQuery> slowQueries;
+    }
+
+    @Data
+    @Builder
+    public static class QueryStats {
+        private String query;
+        private long executionCount;
+        private long meanTime;
+        private long maxTime;
+        private long minTime;
+        private long totalTime;
+        private long rows;
+    }
+
+    @Data
+    @Builder
+    public static class EntityStats {
+        private String entity;
+        private long loads;
+        private long fetches;
+        private long inserts;
+        private long updates;
+        private long deletes;
+    }
+
+    @Data
+    @Builder
+    public static class CollectionStats {
+        private String role;
+        private long loads;
+        private long fetches;
+    }
+}
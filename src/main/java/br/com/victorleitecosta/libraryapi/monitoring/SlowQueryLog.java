@@ -0,0 +1,105 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Logs the statements that took longer than {@code threshold} milliseconds
+ * and keeps the last {@code max-entries} of them for the queries endpoint.
+ * Only the types of the bound parameters are kept, never their values, so
+ * customer data does not end up in the log.
+ */
+@Component
+@Slf4j
+public class SlowQueryLog implements QueryExecutionListener {
+
+    private final long thresholdMillis;
+    private final int maxEntries;
+    private final Deque<SlowQuery> recent = new ArrayDeque<>();
+
+    public SlowQueryLog(@Value("${application.db.slow-query.threshold:500}") long thresholdMillis,
+                        @Value("${application.db.slow-query.max-entries:100}") int maxEntries) {
+        this.thresholdMillis = thresholdMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (execInfo.getElapsedTime() < thresholdMillis) {
+            return;
+        }
+        for (QueryInfo queryInfo : queryInfoList) {
+            SlowQuery slowQuery = new SlowQuery(
+                    LocalDateTime.now(),
+                    execInfo.getElapsedTime(),
+                    queryInfo.getQuery(),
+                    shapes(queryInfo),
+                    execInfo.isBatch() ? execInfo.getBatchSize() : 0,
+                    execInfo.isSuccess());
+            log.warn(" slow query took {} ms: {} parameters {} ", slowQuery.getElapsedMillis(), slowQuery.getSql(), slowQuery.getParameters());
+            add(slowQuery);
+        }
+    }
+
+    public synchronized List<SlowQuery> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+    }
+
+    private synchronized void add(SlowQuery slowQuery) {
+        if (recent.size() == maxEntries) {
+            recent.removeFirst();
+        }
+        recent.addLast(slowQuery);
+    }
+
+    /**
+     * One list of parameter types per execution of the statement; a batch
+     * has one per batched row.
+     */
+    private static List<List<String>> shapes(QueryInfo queryInfo) {
+        return queryInfo.getParametersList().stream()
+                .map(parameters -> parameters.stream().map(SlowQueryLog::shape).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static String shape(ParameterSetOperation operation) {
+        Object[] args = operation.getArgs();
+        if ("setNull".equals(operation.getMethod().getName()) || args.length < 2 || args[1] == null) {
+            return "null";
+        }
+        return args[1].getClass().getSimpleName();
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SlowQuery {
+        private LocalDateTime at;
+        private long elapsedMillis;
+        private String sql;
+        private List<List<String>> parameters;
+        private int batchSize;
+        private boolean success;
+    }
+}
@@ -0,0 +1,10 @@
+-- Book and Loan ids are now allocated from sequences in blocks of 50 (Hibernate pooled optimizer).
+-- Run once on databases created while the ids were IDENTITY columns. Each sequence restarts one
+-- block above the current max id, because the pooled optimizer treats the value it reads as the
+-- upper bound of the block it hands out.
+
+create sequence if not exists book_seq start with 1 increment by 50;
+alter sequence book_seq restart with (select coalesce(max(id), 0) + 50 from book);
+
+create sequence if not exists loan_seq start with 1 increment by 50;
+alter sequence loan_seq restart with (select coalesce(max(id), 0) + 50 from loan);
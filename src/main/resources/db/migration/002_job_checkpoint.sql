@@ -0,0 +1,10 @@
+-- Progress of the chunked scheduled jobs (see ScheduleService). One row per job, updated after
+-- every chunk so that an interrupted run resumes after the last processed id.
+
+create table if not exists job_checkpoint (
+    job_name varchar(255) not null primary key,
+    run_date date,
+    last_id bigint,
+    status varchar(255),
+    updated_at timestamp
+);
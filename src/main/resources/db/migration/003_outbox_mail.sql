@@ -0,0 +1,22 @@
+-- Mail outbox drained by MailDispatcher. Rows are claimed with a token and a lease kept in
+-- next_attempt_at, so the index on (status, next_attempt_at) serves both the due-mail scan and
+-- the recovery of leases abandoned by a crashed node.
+
+create sequence if not exists outbox_mail_seq start with 1 increment by 50;
+
+create table if not exists outbox_mail (
+    id bigint not null primary key,
+    recipient varchar(255),
+    subject varchar(255),
+    body varchar(4000),
+    status varchar(255),
+    attempts integer not null,
+    next_attempt_at timestamp,
+    claim_token varchar(255),
+    last_error varchar(1000),
+    created_at timestamp,
+    sent_at timestamp
+);
+
+create index if not exists idx_outbox_mail_due on outbox_mail (status, next_attempt_at);
+create index if not exists idx_outbox_mail_claim on outbox_mail (claim_token);
@@ -0,0 +1,7 @@
+-- The late loans job now walks the late customers grouped by email, so its checkpoint keeps a
+-- string key, and the grouping and the per-customer lookups are served by an index on the email.
+
+alter table job_checkpoint add column if not exists last_key varchar(255);
+alter table job_checkpoint drop column if exists last_id;
+
+create index if not exists idx_loan_customer_email on loan (customer_email);
@@ -0,0 +1,11 @@
+-- Per-loan notification state and the watermark of the late loans job. A run now selects the
+-- loans that became late after the watermark (range on loan_date) plus the loans whose reminder
+-- is due (range on next_reminder_at), instead of every late loan. Loans already late when this
+-- runs have no state yet, so the first run after it notifies them once and schedules reminders.
+
+alter table loan add column if not exists last_notified_at date;
+alter table loan add column if not exists next_reminder_at date;
+create index if not exists idx_loan_loan_date on loan (loan_date);
+create index if not exists idx_loan_next_reminder_at on loan (next_reminder_at);
+
+alter table job_checkpoint add column if not exists watermark date;
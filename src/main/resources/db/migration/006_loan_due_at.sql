@@ -0,0 +1,10 @@
+-- Loans now carry their own due time (loan period set per loan, default application.loans.loan-days).
+-- Existing loans get the old fixed period of 4 days from the loan date. The late loans job and its
+-- watermark work on the due time from now on, so the watermark becomes a timestamp.
+
+alter table loan add column if not exists due_at timestamp;
+update loan set due_at = dateadd('DAY', 4, cast(loan_date as timestamp)) where due_at is null;
+create index if not exists idx_loan_due_at on loan (due_at);
+drop index if exists idx_loan_loan_date;
+
+alter table job_checkpoint alter column watermark timestamp;
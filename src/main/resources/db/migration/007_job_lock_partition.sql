@@ -0,0 +1,30 @@
+-- Coordination of the scheduled jobs between nodes. job_lock holds one lease per job, taken and
+-- renewed with conditional updates, so that only one node runs the late loans job. When the job
+-- is partitioned the lease holder splits the run in slices of customer e-mails (job_partition);
+-- every node claims pending slices, or slices whose lease expired, and keeps its progress in
+-- last_key.
+
+create table if not exists job_lock (
+    name varchar(255) not null primary key,
+    owner varchar(255),
+    locked_at timestamp,
+    locked_until timestamp
+);
+
+create sequence if not exists job_partition_seq start with 1 increment by 50;
+
+create table if not exists job_partition (
+    id bigint not null primary key,
+    job_name varchar(255),
+    run_date date,
+    lower_key varchar(255),
+    upper_key varchar(255),
+    last_key varchar(255),
+    status varchar(255),
+    owner varchar(255),
+    lease_until timestamp,
+    updated_at timestamp,
+    constraint uk_job_partition unique (job_name, run_date, lower_key)
+);
+
+create index if not exists idx_job_partition_run on job_partition (job_name, run_date, status);
@@ -0,0 +1,5 @@
+-- Optimistic locking for books and loans. The version is also what the ETags of the book and loan
+-- resources are derived from, so bulk updates of loans increment it as well.
+
+alter table book add column if not exists version bigint default 0 not null;
+alter table loan add column if not exists version bigint default 0 not null;
@@ -0,0 +1,19 @@
+-- Rollups behind the circulation reports, so that they no longer scan the loan table. Both tables
+-- are incremented in the transaction that creates or returns the loans; the existing history is
+-- backfilled from the loan table when the application starts with empty rollups.
+
+create table if not exists book_daily_loans (
+    loan_date date not null,
+    book_id bigint not null,
+    loans bigint not null,
+    primary key (loan_date, book_id)
+);
+
+create table if not exists customer_loans (
+    customer varchar(255) not null primary key,
+    loans bigint not null,
+    returned bigint not null,
+    last_loan_date date
+);
+
+create index if not exists idx_customer_loans_loans on customer_loans (loans);
@@ -0,0 +1,15 @@
+-- Counters behind the ETags of the book listings and of the loans of a book, replacing the
+-- count/sum over the whole table that every listing used to run. Both are incremented in the
+-- transaction of the write they stand for. The catalog row is seeded here, and again on startup if
+-- missing, so that concurrent first writes do not race to insert it. Every book write updates that
+-- one row, so book writes serialize on its lock until they commit.
+
+create table if not exists catalog_version (
+    id bigint not null primary key,
+    version bigint not null
+);
+
+insert into catalog_version (id, version)
+select 1, 0 where not exists (select 1 from catalog_version where id = 1);
+
+alter table book add column if not exists loans_version bigint default 0 not null;
@@ -0,0 +1,6 @@
+-- Composite indexes matching the keyset pagination orders, so that each cursor page is an index
+-- range scan: books by (title, id) and loans by (loan_date, id). The latter replaces the plain
+-- loan_date index dropped in 006.
+
+create index if not exists idx_book_title_id on book (title, id);
+create index if not exists idx_loan_loan_date_id on loan (loan_date, id);
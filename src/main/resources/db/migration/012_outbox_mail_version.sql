@@ -0,0 +1,4 @@
+-- Optimistic locking for the mail outbox. Claiming a mail increments its version, so a worker that
+-- kept sending past the end of its lease cannot overwrite the outcome saved under the new claim.
+
+alter table outbox_mail add column if not exists version bigint default 0 not null;
@@ -0,0 +1,8 @@
+-- At most one open loan per book, enforced by the database: each node keeps its own availability
+-- bitmap and only sees the loans it made. open_book_id holds the book id while the loan is open and
+-- is null once returned; a unique index allows any number of nulls. Duplicate open loans already in
+-- the table must be returned before the index can be created.
+
+alter table loan add column if not exists open_book_id bigint;
+update loan set open_book_id = id_book where returned is null or returned = false;
+create unique index if not exists uk_loan_open_book_id on loan (open_book_id);
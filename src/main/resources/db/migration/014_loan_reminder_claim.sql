@@ -0,0 +1,5 @@
+-- Token of the call that claimed the first reminder of a loan: the node id and a random part. The
+-- claimed loans are read back by this token, so loans another node claimed on the same day are not
+-- mistaken for ours.
+
+alter table loan add column if not exists reminder_claim varchar(100);
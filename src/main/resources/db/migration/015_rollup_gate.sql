@@ -0,0 +1,9 @@
+-- Stripes of the lock between rollup updates and rollup rebuilds. Each loan or return transaction
+-- locks one row; a rebuild locks all of them, so it waits for the loans in flight and holds new ones
+-- back until it commits. The application also creates missing rows on startup.
+
+create table if not exists rollup_gate (
+    id int not null primary key
+);
+
+merge into rollup_gate key (id) select x from system_range(0, 15);
@@ -0,0 +1,41 @@
+package br.com.victorleitecosta.libraryapi.api.mapper;
+
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static java.time.LocalDate.now;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = {BookMapperImpl.class, LoanMapperImpl.class})
+public class LoanMapperTest {
+
+    @Autowired
+    LoanMapper mapper;
+
+    @Test
+    @DisplayName("Deve mapear o empréstimo com cliente, email, isbn e livro.")
+    public void toDTOTest() {
+        Book book = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("102").build();
+        Loan loan = Loan.builder().id(2L).customer("Cláudio").customerEmail("claudio@email.com")
+                .book(book).loanDate(now()).build();
+
+        LoanDTO dto = mapper.toDTO(loan);
+
+        assertThat(dto.getId()).isEqualTo(2L);
+        assertThat(dto.getCostumer()).isEqualTo("Cláudio");
+        assertThat(dto.getEmail()).isEqualTo("claudio@email.com");
+        assertThat(dto.getIsbn()).isEqualTo("102");
+        assertThat(dto.getBook().getId()).isEqualTo(1L);
+        assertThat(dto.getBook().getTitle()).isEqualTo("A tribo");
+    }
+}
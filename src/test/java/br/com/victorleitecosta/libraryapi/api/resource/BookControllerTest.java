@@ -1,8 +1,18 @@
 package br.com.victorleitecosta.libraryapi.api.resource;
 
+import br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.BookDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportErrorDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportResultDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
+import br.com.victorleitecosta.libraryapi.api.mapper.BookMapperImpl;
+import br.com.victorleitecosta.libraryapi.api.mapper.LoanMapperImpl;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.service.BookField;
+import br.com.victorleitecosta.libraryapi.api.service.BookImportService;
 import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.DataFormat;
+import br.com.victorleitecosta.libraryapi.api.service.ExportService;
 import br.com.victorleitecosta.libraryapi.api.service.LoanService;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,9 +23,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -23,14 +36,26 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -38,6 +63,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class BookControllerTest {
 
     static String BOOK_API = "/api/books";
@@ -51,6 +77,12 @@ public class BookControllerTest {
     @MockBean
     LoanService loanService;
 
+    @MockBean
+    BookImportService importService;
+
+    @MockBean
+    ExportService exportService;
+
     @Test
     @DisplayName("Deve criar um livro com sucesso.")
     public void createBookTest() throws Exception {
@@ -127,6 +159,7 @@ public class BookControllerTest {
                 .author(createNewBook().getAuthor())
                 .isbn(createNewBook().getIsbn())
                 .build();
+        given(service.getVersion(id)).willReturn(of(0L));
         given(service.getById(id)).willReturn(of(book));
 
 //        Execução (when)
@@ -136,6 +169,7 @@ public class BookControllerTest {
         mvc
                 .perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
@@ -143,6 +177,23 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve retornar not modified sem carregar o livro quando a versão não mudou.")
+    public void notModifiedBookTest() throws Exception {
+        given(service.getVersion(1L)).willReturn(of(2L));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(service, never()).getById(anyLong());
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando o livro procurado não existir.")
     public void bookNotFoundTest() throws Exception {
@@ -190,26 +241,48 @@ public class BookControllerTest {
         Long id = 1L;
         String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-        Book updatingBook = Book.builder().id(1L).title("some title").author("some author").isbn("102").build();
+        Book updatingBook = Book.builder().id(1L).title("some title").author("some author").isbn("102").version(0L).build();
         given(service.getById(id)).willReturn(of(updatingBook));
 
-        Book updatedBook = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("102").build();
+        Book updatedBook = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("102").version(1L).build();
         given(service.update(updatingBook)).willReturn(updatedBook);
 
         MockHttpServletRequestBuilder request = put(BOOK_API.concat("/" + 1))
                 .content(json)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON);
 
         mvc
                 .perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
                 .andExpect(jsonPath("isbn").value("102"));
     }
 
+    @Test
+    @DisplayName("Deve recusar a atualização de um livro alterado desde a versão informada.")
+    public void updateModifiedBookTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+        Book book = Book.builder().id(1L).title("some title").author("some author").isbn("102").version(3L).build();
+        given(service.getById(1L)).willReturn(of(book));
+
+        MockHttpServletRequestBuilder request = put(BOOK_API.concat("/1"))
+                .content(json)
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isPreconditionFailed());
+
+        verify(service, never()).update(any(Book.class));
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando não encontrar o livro para atualizar.")
     public void updateInexistentBookTest() throws Exception {
@@ -239,6 +312,7 @@ public class BookControllerTest {
                 .isbn(createNewBook().getIsbn())
                 .build();
 
+        given(service.getCatalogVersion()).willReturn(1L);
         given(service.find(any(Book.class), any(Pageable.class)))
                 .willReturn(new PageImpl<Book>(asList(book), PageRequest.of(0, 100), 1));
 
@@ -257,6 +331,220 @@ public class BookControllerTest {
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Deve filtrar livros em fatia, sem o total de elementos.")
+    public void findBooksSliceTest() throws Exception {
+        Book book = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("001").build();
+        given(service.getCatalogVersion()).willReturn(1L);
+        given(service.findSlice(any(Book.class), any(Pageable.class)))
+                .willReturn(new SliceImpl<>(asList(book), PageRequest.of(0, 1), true));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("?title=tribo&page=0&size=1&slice=true"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("last").value(false))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+
+        verify(service, never()).find(any(Book.class), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros devolvendo apenas os campos pedidos.")
+    public void findBooksFieldsTest() throws Exception {
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("id", 1L);
+        book.put("title", "A tribo");
+        book.put("isbn", "001");
+        given(service.getCatalogVersion()).willReturn(1L);
+        given(service.find(any(Book.class), eq(EnumSet.of(BookField.ID, BookField.TITLE, BookField.ISBN)), any(Pageable.class)))
+                .willReturn(new PageImpl<>(asList(book), PageRequest.of(0, 10), 1));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("?title=tribo&fields=isbn,title,id"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].isbn").value("001"))
+                .andExpect(jsonPath("content[0].author").doesNotExist())
+                .andExpect(jsonPath("totalElements").value(1));
+
+        verify(service, never()).find(any(Book.class), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve recusar campos desconhecidos na seleção de campos.")
+    public void findBooksUnknownFieldTest() throws Exception {
+        mvc
+                .perform(get(BOOK_API.concat("?fields=id,loans&slice=true")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Campo inválido: loans."));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros com o total aproximado quando solicitado.")
+    public void findBooksApproximateCountTest() throws Exception {
+        Book book = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("001").build();
+        given(service.getCatalogVersion()).willReturn(1L);
+        given(service.findApproximate(any(Book.class), any(Pageable.class)))
+                .willReturn(new PageImpl<>(asList(book), PageRequest.of(0, 1), 40));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("?title=tribo&page=0&size=1&count=approximate"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalElements").value(40));
+
+        verify(service, never()).find(any(Book.class), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar not modified para uma página do catálogo que não mudou.")
+    public void notModifiedCatalogTest() throws Exception {
+        given(service.getCatalogVersion()).willReturn(1L);
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("?page=0&size=100"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isNotModified());
+
+        verify(service, never()).find(any(Book.class), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar not modified para os empréstimos de um livro sem consultá-los.")
+    public void notModifiedBookLoansTest() throws Exception {
+        given(service.getLoansVersion(1L)).willReturn(of(3L));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("/1/loans?page=0&size=10"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isNotModified());
+
+        verify(loanService, never()).getLoanDetailsByBook(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros pelo índice de texto quando informado o parâmetro q.")
+    public void searchBooksTest() throws Exception {
+        Book book = Book.builder()
+                .id(1L)
+                .title(createNewBook().getTitle())
+                .author(createNewBook().getAuthor())
+                .isbn(createNewBook().getIsbn())
+                .build();
+
+        given(service.getCatalogVersion()).willReturn(1L);
+        given(service.search(eq("tribo"), any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(asList(book), PageRequest.of(0, 20), 1));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("?q=tribo&page=0&size=20"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].title").value(book.getTitle()))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Deve paginar livros por cursor devolvendo o token da próxima página.")
+    public void findBooksByCursorTest() throws Exception {
+        Book book = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("001").build();
+
+        given(service.findAfter(isNull(), eq(1)))
+                .willReturn(new SliceImpl<Book>(asList(book), PageRequest.of(0, 1), true));
+
+        MockHttpServletRequestBuilder request = get(BOOK_API.concat("/cursor?size=1"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("next").value(new Cursor("A tribo", 1L).encode()));
+    }
+
+    @Test
+    @DisplayName("Deve distinguir no cursor um título nulo de um título vazio.")
+    public void untitledCursorTest() throws Exception {
+        Book book = Book.builder().id(1L).author("Lindinho").isbn("001").build();
+
+        given(service.findAfter(isNull(), eq(1)))
+                .willReturn(new SliceImpl<Book>(asList(book), PageRequest.of(0, 1), true));
+
+        mvc
+                .perform(get(BOOK_API.concat("/cursor?size=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("next").value(new Cursor(null, 1L).encode()));
+
+        assertThat(Cursor.decode(new Cursor(null, 1L).encode())).isEqualTo(new Cursor(null, 1L));
+        assertThat(Cursor.decode(new Cursor("", 1L).encode())).isEqualTo(new Cursor("", 1L));
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um cursor inválido.")
+    public void invalidCursorTest() throws Exception {
+        mvc
+                .perform(get(BOOK_API.concat("/cursor?after=invalido")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Cursor inválido."));
+    }
+
+    @Test
+    @DisplayName("Deve informar a disponibilidade dos livros pelos isbns.")
+    public void availabilityTest() throws Exception {
+        given(service.getAvailability(asList("001", "002"))).willReturn(asList(
+                BookAvailabilityDTO.builder().id(1L).isbn("001").available(true).build(),
+                BookAvailabilityDTO.builder().id(2L).isbn("002").available(false).build()));
+
+        mvc
+                .perform(get(BOOK_API.concat("/availability?isbns=001,002")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].available").value(true))
+                .andExpect(jsonPath("[1].isbn").value("002"))
+                .andExpect(jsonPath("[1].available").value(false));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em lote a partir de um CSV.")
+    public void importBooksTest() throws Exception {
+        BookImportResultDTO importResult = BookImportResultDTO.builder()
+                .imported(1)
+                .failed(1)
+                .errors(singletonList(new BookImportErrorDTO(3, singletonList("isbn must not be empty"))))
+                .build();
+        given(importService.importBooks(any(), eq(DataFormat.CSV))).willReturn(importResult);
+
+        MockHttpServletRequestBuilder request = post(BOOK_API.concat("/bulk"))
+                .contentType("text/csv")
+                .accept(MediaType.APPLICATION_JSON)
+                .content("title,author,isbn\nA tribo,Lindinho,001\nSem isbn,Lindinho,\n");
+
+        mvc
+                .perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("failed").value(1))
+                .andExpect(jsonPath("errors[0].line").value(3));
+    }
+
     private BookDTO createNewBook() {
         return BookDTO.builder().title("A tribo").author("Lindinho").isbn("001").build();
     }
@@ -0,0 +1,67 @@
+package br.com.victorleitecosta.libraryapi.api.resource;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.monitoring.QueryStatisticsEndpoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the slice listings against the database, capturing every statement
+ * through the slow query log.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.db.slow-query.threshold=0",
+        "application.mail.outbox.poll-interval=3600000"
+})
+@AutoConfigureMockMvc
+public class BookSliceQueriesTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    QueryStatisticsEndpoint endpoint;
+
+    @Test
+    @DisplayName("Deve listar livros em modo slice sem executar contagens nem agregações.")
+    public void sliceIssuesNoAggregateTest() throws Exception {
+        bookService.save(Book.builder().title("Slice").author("Lindinho").isbn("slice-001").build());
+        endpoint.reset();
+
+        mvc.perform(get("/api/books?slice=true&page=0&size=10").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+        mvc.perform(get("/api/books?fields=id,title&slice=true&page=0&size=10")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(endpoint.queries(null).getSlowQueries())
+                .isNotEmpty()
+                .allSatisfy(slowQuery -> assertThat(slowQuery.getSql())
+                        .doesNotContainIgnoringCase("count(")
+                        .doesNotContainIgnoringCase("sum("));
+    }
+}
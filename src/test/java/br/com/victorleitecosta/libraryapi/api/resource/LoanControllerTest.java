@@ -1,40 +1,64 @@
 package br.com.victorleitecosta.libraryapi.api.resource;
 
 
+import br.com.victorleitecosta.libraryapi.api.dto.Cursor;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchStatus;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanFilterDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.ReturnedLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.ReturnedLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.mapper.BookMapperImpl;
+import br.com.victorleitecosta.libraryapi.api.mapper.LoanMapperImpl;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
 import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.DataFormat;
+import br.com.victorleitecosta.libraryapi.api.service.ExportService;
 import br.com.victorleitecosta.libraryapi.api.service.LoanService;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
 import static br.com.victorleitecosta.libraryapi.service.LoanServiceTest.createLoan;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.LocalDate.now;
 import static java.util.Arrays.asList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -44,6 +68,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class LoanControllerTest {
 
     static final String LOAN_API = "/api/loans";
@@ -57,6 +82,9 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private ExportService exportService;
+
     @Test
     @DisplayName("Deve realizar um empréstimo.")
     public void createLoanTest() throws Exception {
@@ -81,6 +109,31 @@ public class LoanControllerTest {
                 .andExpect(content().string("1"));
     }
 
+    @Test
+    @DisplayName("Deve realizar um empréstimo com prazo próprio em dias.")
+    public void createLoanWithDaysTest() throws Exception {
+        LoanDTO dto = LoanDTO.builder().isbn("102").costumer("Cláudio").email("customer@email.com").days(10).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        Book book = Book.builder().id(1L).isbn("102").build();
+        given(bookService.getBookByIsbn("102")).willReturn(of(book));
+        given(loanService.save(any(Loan.class))).willAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            loan.setId(1L);
+            return loan;
+        });
+
+        mvc
+                .perform(post(LOAN_API).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isCreated());
+
+        ArgumentCaptor<Loan> saved = ArgumentCaptor.forClass(Loan.class);
+        verify(loanService).save(saved.capture());
+        assertThat(saved.getValue().getDueAt())
+                .isBetween(LocalDateTime.now().plusDays(10).minusMinutes(1), LocalDateTime.now().plusDays(10));
+        assertThat(saved.getValue().getCustomerEmail()).isEqualTo("customer@email.com");
+    }
+
     @Test
     @DisplayName("Deve retornar erro ao tentar fazer empréstimo de um livro inexistente.")
     public void invalidIsbnCreateLoanTest() throws Exception {
@@ -129,6 +182,62 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve realizar um lote de empréstimos informando o resultado de cada item.")
+    public void createLoanBatchTest() throws Exception {
+        List<LoanDTO> dtos = asList(
+                LoanDTO.builder().isbn("102").costumer("Cláudio").email("cliente@email.com").build(),
+                LoanDTO.builder().isbn("103").costumer("Cláudio").email("cliente@email.com").build());
+        String json = new ObjectMapper().writeValueAsString(dtos);
+
+        given(loanService.saveAll(anyList())).willReturn(asList(
+                LoanBatchItemDTO.builder().id(1L).isbn("102").status(LoanBatchStatus.CREATED).build(),
+                LoanBatchItemDTO.builder().isbn("103").status(LoanBatchStatus.BOOK_NOT_FOUND)
+                        .message("Book not found for passed isbn").build()));
+
+        mvc.perform(post(LOAN_API.concat("/batch"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[1].status").value("BOOK_NOT_FOUND"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao enviar um lote de empréstimos vazio.")
+    public void emptyLoanBatchTest() throws Exception {
+        mvc.perform(post(LOAN_API.concat("/batch"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        verify(loanService, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Deve devolver um lote de empréstimos.")
+    public void returnBooksTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoansDTO.builder().ids(asList(1L, 2L)).build());
+
+        given(loanService.returnAll(asList(1L, 2L))).willReturn(asList(
+                LoanBatchItemDTO.builder().id(1L).status(LoanBatchStatus.RETURNED).build(),
+                LoanBatchItemDTO.builder().id(2L).status(LoanBatchStatus.LOAN_NOT_FOUND).message("Loan not found").build()));
+
+        mvc.perform(patch(LOAN_API.concat("/returns"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("RETURNED"))
+                .andExpect(jsonPath("$[1].status").value("LOAN_NOT_FOUND"));
+
+        verify(loanService, never()).update(any(Loan.class));
+    }
+
     @Test
     @DisplayName("Deve retornar um livro.")
     public void returnBookTest() throws Exception {
@@ -177,8 +286,10 @@ public class LoanControllerTest {
         Book book = Book.builder().id(id).isbn("102").build();
         loan.setBook(book);
 
-        given(loanService.find(any(LoanFilterDTO.class), any(Pageable.class)))
-                .willReturn(new PageImpl<Loan>(asList(loan), PageRequest.of(0, 10), 1));
+        LoanDTO loanDTO = new LoanDTO(id, book.getIsbn(), loan.getCustomer(), "customer@email.com",
+                book.getId(), book.getTitle(), book.getAuthor());
+        given(loanService.findDetails(any(LoanFilterDTO.class), any(Pageable.class)))
+                .willReturn(new PageImpl<LoanDTO>(asList(loanDTO), PageRequest.of(0, 10), 1));
 
         String queryString = String.format("?isbn=%s&customer=%s&page=0&size=10",
                 book.getIsbn(), loan.getCustomer());
@@ -190,8 +301,86 @@ public class LoanControllerTest {
                 .perform(request)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].costumer").value(loan.getCustomer()))
+                .andExpect(jsonPath("content[0].book.isbn").value(book.getIsbn()))
                 .andExpect(jsonPath("totalElements").value(1))
                 .andExpect(jsonPath("pageable.pageSize").value(10))
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
+
+    @Test
+    @DisplayName("Deve filtrar empréstimos em fatia, sem o total de elementos.")
+    public void findLoansSliceTest() throws Exception {
+        LoanDTO loanDTO = new LoanDTO(1L, "102", "Cláudio", "customer@email.com", 1L, "A tribo", "Lindinho");
+        given(loanService.findDetailsSlice(any(LoanFilterDTO.class), any(Pageable.class)))
+                .willReturn(new SliceImpl<>(asList(loanDTO), PageRequest.of(0, 10), false));
+
+        mvc
+                .perform(get(LOAN_API.concat("?isbn=102&page=0&size=10&slice=true"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("last").value(true))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve gerar o cursor seguinte de um empréstimo sem data.")
+    public void undatedCursorTest() throws Exception {
+        Loan loan = createLoan();
+        loan.setId(1L);
+        loan.setLoanDate(null);
+
+        given(loanService.findAfter(any(LoanFilterDTO.class), isNull(), eq(1)))
+                .willReturn(new SliceImpl<Loan>(asList(loan), PageRequest.of(0, 1), true));
+
+        mvc
+                .perform(get(LOAN_API.concat("/cursor?size=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("next").value(new Cursor(null, 1L).encode()));
+
+        assertThat(new Cursor(null, 1L).keyAsDate()).isNull();
+        assertThatThrownBy(() -> new Cursor("ontem", 1L).keyAsDate())
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Cursor inválido.");
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um cursor de empréstimos inválido.")
+    public void invalidCursorTest() throws Exception {
+        mvc
+                .perform(get(LOAN_API.concat("/cursor?after=invalido")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Cursor inválido."));
+    }
+
+    @Test
+    @DisplayName("Deve exportar o histórico de empréstimos em CSV como stream.")
+    public void exportLoansTest() throws Exception {
+        willAnswer(invocation -> {
+            OutputStream output = invocation.getArgument(1);
+            output.write("id,customer\n1,Cláudio\n".getBytes(UTF_8));
+            return null;
+        }).given(exportService).exportLoans(eq(DataFormat.CSV), any(OutputStream.class));
+
+        MvcResult result = mvc
+                .perform(get(LOAN_API.concat("/export?format=csv")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"loans.csv\""))
+                .andExpect(content().string("id,customer\n1,Cláudio\n"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um formato de exportação inválido.")
+    public void invalidExportFormatTest() throws Exception {
+        mvc
+                .perform(get(LOAN_API.concat("/export?format=xml")))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,99 @@
+package br.com.victorleitecosta.libraryapi.api.resource;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO;
+import br.com.victorleitecosta.libraryapi.api.service.ReportService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static java.time.LocalDate.now;
+import static java.util.Optional.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = ReportController.class)
+@AutoConfigureMockMvc
+public class ReportControllerTest {
+
+    static final String REPORT_API = "/api/reports";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    ReportService service;
+
+    @Test
+    @DisplayName("Deve listar os livros mais emprestados nos últimos 30 dias.")
+    public void mostBorrowedTest() throws Exception {
+        given(service.getMostBorrowed(now().minusDays(29), now(), 100))
+                .willReturn(List.of(new BookLoansDTO(1L, "123", "A tribo", 7L)));
+
+        mvc.perform(get(REPORT_API + "/books/most-borrowed?size=1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].isbn").value("123"))
+                .andExpect(jsonPath("$[0].loans").value(7));
+    }
+
+    @Test
+    @DisplayName("Deve recusar períodos invertidos ou maiores que um ano.")
+    public void invalidPeriodTest() throws Exception {
+        mvc.perform(get(REPORT_API + "/loans/daily?from=2021-02-01&to=2021-01-01"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get(REPORT_API + "/loans/daily?from=2019-01-01&to=2021-01-01"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    @DisplayName("Deve listar os clientes mais ativos sem contar o total de clientes.")
+    public void mostActiveCustomersTest() throws Exception {
+        Pageable pageable = PageRequest.of(0, 2);
+        given(service.getMostActiveCustomers(any(Pageable.class))).willReturn(new SliceImpl<>(
+                List.of(new CustomerActivityDTO("Cláudio", 3L, 2L, now())), pageable, true));
+
+        mvc.perform(get(REPORT_API + "/customers?page=0&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].customer").value("Cláudio"))
+                .andExpect(jsonPath("$.last").value(false))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+        verify(service).getMostActiveCustomers(pageable);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 para cliente sem empréstimos e não expor a reconstrução na API pública.")
+    public void customerNotFoundAndNoPublicRebuildTest() throws Exception {
+        given(service.getCustomerActivity("Ninguém")).willReturn(empty());
+
+        mvc.perform(get(REPORT_API + "/customers/Ninguém"))
+                .andExpect(status().isNotFound());
+        mvc.perform(post(REPORT_API + "/rollups/rebuild"))
+                .andExpect(status().isNotFound());
+        verify(service, never()).rebuildRollups();
+    }
+}
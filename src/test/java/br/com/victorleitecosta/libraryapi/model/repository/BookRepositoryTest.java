@@ -2,15 +2,23 @@ package br.com.victorleitecosta.libraryapi.model.repository;
 
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.CatalogVersionRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,6 +34,9 @@ public class BookRepositoryTest {
     @Autowired
     BookRepository repository;
 
+    @Autowired
+    CatalogVersionRepository catalogVersion;
+
     @Test
     @DisplayName("Deve retornar verdadeiro quando existir um livro na base com o isbn informado.")
     public void returnTrueWhenIsbnExists() {
@@ -91,6 +102,106 @@ public class BookRepositoryTest {
         assertThat(deletedBook).isNull();
     }
 
+    @Test
+    @DisplayName("Deve paginar livros por título e id a partir de um cursor.")
+    public void findPageAfterTest() {
+        Book first = entityManager.persist(Book.builder().title("A").author("Lindinho").isbn("001").build());
+        Book second = entityManager.persist(Book.builder().title("B").author("Lindinho").isbn("002").build());
+        Book third = entityManager.persist(Book.builder().title("B").author("Lindinho").isbn("003").build());
+
+        List<Book> firstPage = repository.findFirstPage(PageRequest.of(0, 2));
+        List<Book> nextPage = repository.findPageAfter(second.getTitle(), second.getId(), PageRequest.of(0, 2));
+
+        assertThat(firstPage).containsExactly(first, second);
+        assertThat(nextPage).containsExactly(third);
+    }
+
+    @Test
+    @DisplayName("Deve paginar por cursor livros sem título antes dos demais, sem pular nem repetir.")
+    public void findPageAfterUntitledTest() {
+        Book untitled = entityManager.persist(Book.builder().author("Lindinho").isbn("001").build());
+        Book otherUntitled = entityManager.persist(Book.builder().author("Lindinho").isbn("002").build());
+        Book titled = entityManager.persist(Book.builder().title("A").author("Lindinho").isbn("003").build());
+
+        List<Book> firstPage = repository.findFirstPage(PageRequest.of(0, 1));
+        List<Book> secondPage = repository.findPageAfterUntitled(untitled.getId(), PageRequest.of(0, 1));
+        List<Book> thirdPage = repository.findPageAfterUntitled(otherUntitled.getId(), PageRequest.of(0, 1));
+
+        assertThat(firstPage).containsExactly(untitled);
+        assertThat(secondPage).containsExactly(otherUntitled);
+        assertThat(thirdPage).containsExactly(titled);
+    }
+
+    @Test
+    @DisplayName("Deve buscar uma fatia de livros por exemplo sem contar o total.")
+    public void findSliceTest() {
+        entityManager.persist(Book.builder().title("A tribo").author("Lindinho").isbn("001").build());
+        entityManager.persist(Book.builder().title("A tribo II").author("Lindinho").isbn("002").build());
+        entityManager.persist(Book.builder().title("Outro").author("Lindinho").isbn("003").build());
+        Example<Book> example = Example.of(Book.builder().title("TRIBO").build(),
+                ExampleMatcher.matching()
+                        .withIgnoreCase()
+                        .withIgnoreNullValues()
+                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+
+        Slice<Book> first = repository.findSlice(example, PageRequest.of(0, 1, Sort.by("isbn")));
+        Slice<Book> last = repository.findSlice(example, PageRequest.of(1, 1, Sort.by("isbn")));
+
+        assertThat(first.getContent()).extracting(Book::getIsbn).containsExactly("001");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(last.getContent()).extracting(Book::getIsbn).containsExactly("002");
+        assertThat(last.hasNext()).isFalse();
+        assertThat(repository.countCached(example)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve buscar apenas as colunas pedidas dos livros.")
+    public void findSliceWithAttributesTest() {
+        Book book = entityManager.persist(Book.builder().title("A tribo").author("Lindinho").isbn("001").build());
+        entityManager.persist(Book.builder().title("Outro").author("Lindinho").isbn("002").build());
+        Example<Book> example = Example.of(Book.builder().title("tribo").build(),
+                ExampleMatcher.matching()
+                        .withIgnoreCase()
+                        .withIgnoreNullValues()
+                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+
+        Slice<Map<String, Object>> result =
+                repository.findSlice(example, List.of("id", "isbn"), PageRequest.of(0, 10, Sort.by("title")));
+
+        assertThat(result.getContent()).containsExactly(Map.of("id", book.getId(), "isbn", "001"));
+        assertThat(result.getContent().get(0).keySet()).containsExactly("id", "isbn");
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve mudar a versão do livro e a dos seus empréstimos a cada alteração.")
+    public void versionTest() {
+        Book book = entityManager.persist(createNewBook("102"));
+        entityManager.flush();
+
+        book.setTitle("O retorno");
+        entityManager.flush();
+        repository.incrementLoansVersion(List.of(book.getId()));
+
+        assertThat(repository.findVersionById(book.getId())).contains(1L);
+        assertThat(repository.findVersionById(0L)).isEmpty();
+        assertThat(repository.findLoansVersionById(book.getId())).contains(2L);
+        assertThat(repository.findLoansVersionById(0L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve criar a versão do catálogo uma única vez e incrementá-la a cada escrita.")
+    public void catalogVersionTest() {
+        catalogVersion.create();
+        assertThat(catalogVersion.findVersion()).contains(0L);
+
+        catalogVersion.increment();
+        catalogVersion.increment();
+        catalogVersion.create();
+
+        assertThat(catalogVersion.findVersion()).contains(2L);
+    }
+
     static Book createNewBook(String isbn) {
         return Book.builder().title("A tribo").author("Lindinho").isbn(isbn).build();
     }
@@ -0,0 +1,153 @@
+package br.com.victorleitecosta.libraryapi.model.repository;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.CustomerActivityDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.DailyLoansDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookDailyLoansRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.CustomerLoansRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.RollupGateRepository;
+import br.com.victorleitecosta.libraryapi.api.service.CirculationRollups;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static br.com.victorleitecosta.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static java.time.LocalDate.now;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(CirculationRollups.class)
+public class CirculationRollupsTest {
+
+    @Autowired
+    CirculationRollups rollups;
+
+    @Autowired
+    BookDailyLoansRepository dailyRepository;
+
+    @Autowired
+    CustomerLoansRepository customerRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    RollupGateRepository gateRepository;
+
+    @Test
+    @DisplayName("Deve incrementar os consolidados a cada empréstimo e devolução.")
+    public void recordLoansAndReturnsTest() {
+        Book tribo = entityManager.persist(createNewBook("rollup-001"));
+        Book outro = entityManager.persist(createNewBook("rollup-002"));
+        LocalDate yesterday = now().minusDays(1);
+
+        rollups.recordLoans(List.of(
+                createAndPersistLoan(tribo, "Rollup Cláudio", yesterday, true),
+                createAndPersistLoan(outro, "Rollup Cláudio", yesterday, false)));
+        rollups.recordLoans(List.of(createAndPersistLoan(tribo, "Rollup Maria", now(), false)));
+        rollups.recordReturns(Map.of("Rollup Cláudio", 1L));
+
+        assertThat(dailyRepository.findDailyLoans(yesterday, now()))
+                .containsExactly(new DailyLoansDTO(yesterday, 2L), new DailyLoansDTO(now(), 1L));
+        assertThat(dailyRepository.findMostBorrowed(yesterday, now(), PageRequest.of(0, 1)))
+                .containsExactly(new BookLoansDTO(tribo.getId(), "rollup-001", "A tribo", 2L));
+        assertThat(customerRepository.findActivity("Rollup Cláudio"))
+                .contains(new CustomerActivityDTO("Rollup Cláudio", 2L, 1L, yesterday));
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir os consolidados a partir do histórico de empréstimos.")
+    public void rebuildFromHistoryTest() {
+        Book book = entityManager.persist(createNewBook("rollup-003"));
+        LocalDate lastWeek = now().minusDays(7);
+        createAndPersistLoan(book, "Rollup José", lastWeek, true);
+        createAndPersistLoan(book, "Rollup José", now(), false);
+        entityManager.flush();
+
+        rollups.rebuild();
+
+        assertThat(dailyRepository.findDailyLoans(lastWeek, now()))
+                .containsExactly(new DailyLoansDTO(lastWeek, 1L), new DailyLoansDTO(now(), 1L));
+        assertThat(customerRepository.findMostActive(PageRequest.of(0, 10)))
+                .containsExactly(new CustomerActivityDTO("Rollup José", 2L, 1L, now()));
+    }
+
+    @Test
+    @DisplayName("Deve desfazer os consolidados criados quando a transação do empréstimo é desfeita.")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void rollbackWithCallerTest() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Book book = entityManager.persist(createNewBook("rollup-004"));
+            rollups.recordLoans(List.of(createAndPersistLoan(book, "Rollup Ana", now(), false)));
+            status.setRollbackOnly();
+        });
+
+        assertThat(customerRepository.findActivity("Rollup Ana")).isEmpty();
+        assertThat(dailyRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve segurar os empréstimos até a reconstrução dos consolidados terminar.")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void recordWaitsForRebuildTest() throws Exception {
+        CountDownLatch gateLocked = new CountDownLatch(1);
+        Thread rebuild = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            gateRepository.lockAll();
+            gateLocked.countDown();
+            sleep(300);
+        }));
+        rebuild.start();
+        gateLocked.await();
+
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            rollups.recordReturns(Map.of("Rollup Pedro", 1L));
+            status.setRollbackOnly();
+        });
+        rebuild.join();
+
+        assertThat(gateRepository.count()).isEqualTo(16);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(200));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Loan createAndPersistLoan(Book book, String customer, LocalDate loanDate, boolean returned) {
+        return entityManager.persist(Loan.builder()
+                .book(book)
+                .customer(customer)
+                .loanDate(loanDate)
+                .returned(returned)
+                .build());
+    }
+}
@@ -1,5 +1,10 @@
 package br.com.victorleitecosta.libraryapi.model.repository;
 
+import br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanStateDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDueDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
 import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
@@ -10,15 +15,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.PersistenceException;
 import java.time.LocalDate;
 import java.util.List;
 
 import static br.com.victorleitecosta.libraryapi.model.repository.BookRepositoryTest.createNewBook;
 import static java.time.LocalDate.now;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.springframework.data.domain.PageRequest.of;
 
 @ExtendWith(SpringExtension.class)
@@ -45,6 +55,39 @@ public class LoanRepositoryTest {
         assertThat(exists).isTrue();
     }
 
+    @Test
+    @DisplayName("Deve recusar um segundo empréstimo em aberto para o mesmo livro.")
+    public void openLoanGuardTest() {
+        Loan first = createAndPersistLoan(now());
+        Book book = first.getBook();
+        entityManager.flush();
+        repository.markReturned(asList(first.getId()));
+        entityManager.clear();
+
+        Loan second = entityManager.persistAndFlush(Loan.builder().book(book).customer("Maria").loanDate(now()).build());
+        List<Long> openBookIds = repository.findOpenBookIds(asList(book.getId(), 0L));
+        Throwable exception = catchThrowable(() -> entityManager.persistAndFlush(
+                Loan.builder().book(book).customer("José").loanDate(now()).build()));
+
+        assertThat(second.getOpenBookId()).isEqualTo(book.getId());
+        assertThat(openBookIds).containsExactly(book.getId());
+        assertThat(exception).isInstanceOf(PersistenceException.class)
+                .hasStackTraceContaining(Loan.OPEN_BOOK_INDEX.toUpperCase());
+    }
+
+    @Test
+    @DisplayName("Deve listar os ids dos livros com empréstimo em aberto.")
+    public void findLoanedBookIdsTest() {
+        Loan loan = createAndPersistLoan(now());
+        Loan returnedLoan = createAndPersistLoan(now());
+        returnedLoan.setReturned(true);
+        entityManager.persist(returnedLoan);
+
+        List<Long> bookIds = repository.findLoanedBookIds();
+
+        assertThat(bookIds).containsExactly(loan.getBook().getId());
+    }
+
     @Test
     @DisplayName("Deve buscar empréstimo pelo isbn do livro ou customer.")
     public void findByBookIsbnOrCustomerTest() {
@@ -59,6 +102,49 @@ public class LoanRepositoryTest {
         assertThat(result.getTotalElements()).isEqualTo(1);
     }
 
+    @Test
+    @DisplayName("Deve buscar empréstimos já projetados em LoanDTO com os dados do livro.")
+    public void findDetailsByBookIsbnOrCustomerTest() {
+        Loan loan = createAndPersistLoan(now());
+
+        Page<LoanDTO> result = repository.findDetailsByBookIsbnOrCustomer("123", null, of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        LoanDTO dto = result.getContent().get(0);
+        assertThat(dto.getId()).isEqualTo(loan.getId());
+        assertThat(dto.getCostumer()).isEqualTo("Cláudio");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getBook().getId()).isEqualTo(loan.getBook().getId());
+        assertThat(dto.getBook().getTitle()).isEqualTo(loan.getBook().getTitle());
+    }
+
+    @Test
+    @DisplayName("Deve buscar uma fatia de empréstimos sem contar o total.")
+    public void findDetailsSliceByBookIsbnOrCustomerTest() {
+        createAndPersistLoan(now());
+        createAndPersistLoan(now());
+
+        Slice<LoanDTO> first = repository.findDetailsSliceByBookIsbnOrCustomer("123", null, of(0, 1));
+        Slice<LoanDTO> last = repository.findDetailsSliceByBookIsbnOrCustomer("123", null, of(1, 1));
+
+        assertThat(first.getContent()).hasSize(1);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(last.getContent()).hasSize(1);
+        assertThat(last.hasNext()).isFalse();
+        assertThat(repository.countCachedByBookIsbnOrCustomer("123", null)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve buscar os empréstimos de um livro já projetados em LoanDTO.")
+    public void findDetailsByBookIdTest() {
+        Loan loan = createAndPersistLoan(now());
+        createAndPersistLoan(now());
+
+        Page<LoanDTO> result = repository.findDetailsByBookId(loan.getBook().getId(), of(0, 10));
+
+        assertThat(result.getContent()).extracting("id").containsExactly(loan.getId());
+    }
+
     @Test
     @DisplayName("Deve obter empréstimos cuja data empréstimo for menor ou igual a três dias atrás e não retornados.")
     public void findByLoanDateLessThanAndNotReturnedTest() {
@@ -81,11 +167,181 @@ public class LoanRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve agrupar por email os clientes com empréstimos atrasados, paginando pelo email.")
+    public void findCustomersToNotifyAfterTest() {
+        createAndPersistLoan(now().minusDays(5), "b@email.com");
+        createAndPersistLoan(now().minusDays(6), "b@email.com");
+        createAndPersistLoan(now().minusDays(5), "a@email.com");
+        createAndPersistLoan(now(), "c@email.com");
+        Loan returned = createAndPersistLoan(now().minusDays(5), "d@email.com");
+        returned.setReturned(true);
+        entityManager.persist(returned);
+
+        List<LateCustomerDTO> first = repository.findCustomersToNotifyAfter(LocalDate.EPOCH.atStartOfDay(), now().atStartOfDay(), now(), "", null, of(0, 1));
+        List<LateCustomerDTO> next = repository.findCustomersToNotifyAfter(LocalDate.EPOCH.atStartOfDay(), now().atStartOfDay(), now(), "a@email.com", null, of(0, 10));
+        List<LateCustomerDTO> slice = repository.findCustomersToNotifyAfter(LocalDate.EPOCH.atStartOfDay(), now().atStartOfDay(), now(), "", "a@email.com", of(0, 10));
+
+        assertThat(first).extracting(LateCustomerDTO::getEmail).containsExactly("a@email.com");
+        assertThat(next).extracting(LateCustomerDTO::getEmail).containsExactly("b@email.com");
+        assertThat(slice).extracting(LateCustomerDTO::getEmail).containsExactly("a@email.com");
+        assertThat(next.get(0).getLateLoans()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve selecionar apenas empréstimos que atrasaram após a marca d'água ou com lembrete vencido.")
+    public void findCustomersToNotifyAfterWatermarkTest() {
+        createAndPersistLoan(now().minusDays(5), "novo@email.com");
+        Loan notified = createAndPersistLoan(now().minusDays(10), "notificado@email.com");
+        notified.setNextReminderAt(now().plusDays(3));
+        entityManager.persist(notified);
+        Loan reminder = createAndPersistLoan(now().minusDays(20), "lembrete@email.com");
+        reminder.setNextReminderAt(now());
+        entityManager.persist(reminder);
+        createAndPersistLoan(now().minusDays(30), "antigo@email.com");
+
+        List<LateCustomerDTO> customers = repository.findCustomersToNotifyAfter(
+                now().minusDays(2).atStartOfDay(), now().atStartOfDay(), now(), "", null, of(0, 10));
+
+        assertThat(customers).extracting(LateCustomerDTO::getEmail).containsExactly("lembrete@email.com", "novo@email.com");
+    }
+
+    @Test
+    @DisplayName("Deve listar os prazos dos empréstimos em aberto ainda não notificados.")
+    public void findPendingDueDatesTest() {
+        Loan pending = createAndPersistLoan(now());
+        Loan notified = createAndPersistLoan(now().minusDays(10));
+        notified.setNextReminderAt(now().plusDays(1));
+        entityManager.persist(notified);
+
+        List<LoanDueDTO> dueDates = repository.findPendingDueDates();
+
+        assertThat(dueDates).containsExactly(new LoanDueDTO(pending.getId(), pending.getDueAt()));
+    }
+
+    @Test
+    @DisplayName("Deve reservar para lembrete apenas empréstimos em aberto e ainda não notificados.")
+    public void claimFirstNoticesTest() {
+        Loan pending = createAndPersistLoan(now().minusDays(4));
+        Loan returned = createAndPersistLoan(now().minusDays(4));
+        returned.setReturned(true);
+        entityManager.persist(returned);
+        Loan notified = createAndPersistLoan(now().minusDays(4));
+        notified.setNextReminderAt(now().plusDays(1));
+        entityManager.persist(notified);
+        entityManager.flush();
+        entityManager.clear();
+        List<Long> ids = asList(pending.getId(), returned.getId(), notified.getId());
+
+        int claimed = repository.claimFirstNotices(ids, "node-1:a", now(), now().plusDays(7));
+        int claimedAgain = repository.claimFirstNotices(ids, "node-2:b", now(), now().plusDays(7));
+        List<LateLoanDTO> loans = repository.findClaimedLoans(ids, "node-1:a");
+        List<LateLoanDTO> otherLoans = repository.findClaimedLoans(ids, "node-2:b");
+
+        assertThat(claimed).isEqualTo(1);
+        assertThat(claimedAgain).isZero();
+        assertThat(loans).extracting(LateLoanDTO::getId).containsExactly(pending.getId());
+        assertThat(otherLoans).isEmpty();
+        assertThat(entityManager.find(Loan.class, pending.getId()).getNextReminderAt()).isEqualTo(now().plusDays(7));
+    }
+
+    @Test
+    @DisplayName("Deve registrar a notificação e o próximo lembrete dos empréstimos.")
+    public void markNotifiedTest() {
+        Loan loan = createAndPersistLoan(now().minusDays(5));
+        entityManager.flush();
+        entityManager.clear();
+
+        int updated = repository.markNotified(singletonList(loan.getId()), now(), now().plusDays(7));
+
+        Loan found = entityManager.find(Loan.class, loan.getId());
+        assertThat(updated).isEqualTo(1);
+        assertThat(found.getLastNotifiedAt()).isEqualTo(now());
+        assertThat(found.getNextReminderAt()).isEqualTo(now().plusDays(7));
+    }
+
+    @Test
+    @DisplayName("Deve devolver em lote apenas os empréstimos ainda em aberto.")
+    public void markReturnedTest() {
+        Loan open = createAndPersistLoan(now().minusDays(5));
+        open.setNextReminderAt(now());
+        Loan returned = createAndPersistLoan(now().minusDays(5));
+        returned.setReturned(true);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<LoanStateDTO> states = repository.findStatesForUpdateByIdIn(asList(open.getId(), returned.getId(), 0L));
+        int updated = repository.markReturned(asList(open.getId(), returned.getId()));
+
+        assertThat(states).extracting(LoanStateDTO::getId).containsExactlyInAnyOrder(open.getId(), returned.getId());
+        assertThat(states).filteredOn(state -> state.getId().equals(open.getId()))
+                .singleElement()
+                .satisfies(state -> assertThat(state.getBookId()).isEqualTo(open.getBook().getId()));
+        assertThat(updated).isEqualTo(1);
+        Loan found = entityManager.find(Loan.class, open.getId());
+        assertThat(found.getReturned()).isTrue();
+        assertThat(found.getNextReminderAt()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve buscar os empréstimos atrasados dos clientes informados já projetados.")
+    public void findLateLoansByCustomerEmailsTest() {
+        Loan older = createAndPersistLoan(now().minusDays(6), "b@email.com");
+        Loan newer = createAndPersistLoan(now().minusDays(5), "b@email.com");
+        createAndPersistLoan(now().minusDays(5), "a@email.com");
+
+        List<LateLoanDTO> loans = repository.findLateLoansByCustomerEmails(now().atStartOfDay(), singletonList("b@email.com"));
+
+        assertThat(loans).extracting(LateLoanDTO::getId).containsExactly(older.getId(), newer.getId());
+        assertThat(loans.get(0).getTitle()).isEqualTo(older.getBook().getTitle());
+    }
+
+    @Test
+    @DisplayName("Deve paginar empréstimos por data e id a partir de um cursor.")
+    public void findPageAfterTest() {
+        Loan older = createAndPersistLoan(now().minusDays(2));
+        Loan newer = createAndPersistLoan(now());
+
+        List<Loan> firstPage = repository.findFirstPage(null, "Cláudio", of(0, 1));
+        List<Loan> nextPage = repository.findPageAfter(null, "Cláudio", older.getLoanDate(), older.getId(), of(0, 1));
+        List<Loan> lastPage = repository.findPageAfter(null, "Cláudio", newer.getLoanDate(), newer.getId(), of(0, 1));
+
+        assertThat(firstPage).containsExactly(older);
+        assertThat(nextPage).containsExactly(newer);
+        assertThat(lastPage).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve paginar por cursor empréstimos sem data antes dos demais, sem pular nem repetir.")
+    public void findPageAfterUndatedTest() {
+        Loan undated = createAndPersistLoan(null);
+        Loan otherUndated = createAndPersistLoan(null);
+        Loan dated = createAndPersistLoan(now());
+
+        List<Loan> firstPage = repository.findFirstPage(null, "Cláudio", of(0, 1));
+        List<Loan> secondPage = repository.findPageAfterUndated(null, "Cláudio", undated.getId(), of(0, 1));
+        List<Loan> thirdPage = repository.findPageAfterUndated(null, "Cláudio", otherUndated.getId(), of(0, 1));
+
+        assertThat(firstPage).containsExactly(undated);
+        assertThat(secondPage).containsExactly(otherUndated);
+        assertThat(thirdPage).containsExactly(dated);
+    }
+
     private Loan createAndPersistLoan(LocalDate loandate) {
+        return createAndPersistLoan(loandate, "claudio@email.com");
+    }
+
+    private Loan createAndPersistLoan(LocalDate loandate, String email) {
         Book book = createNewBook("123");
         entityManager.persist(book);
 
-        Loan loan = Loan.builder().book(book).customer("Cláudio").loanDate(loandate).build();
+        Loan loan = Loan.builder()
+                .book(book)
+                .customer("Cláudio")
+                .customerEmail(email)
+                .loanDate(loandate)
+                .dueAt(loandate == null ? null : loandate.atStartOfDay().plusDays(4))
+                .build();
         entityManager.persist(loan);
         return loan;
     }
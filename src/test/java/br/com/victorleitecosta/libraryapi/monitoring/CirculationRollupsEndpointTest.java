@@ -0,0 +1,25 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import br.com.victorleitecosta.libraryapi.api.service.ReportService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class CirculationRollupsEndpointTest {
+
+    ReportService reportService = mock(ReportService.class);
+
+    CirculationRollupsEndpoint endpoint = new CirculationRollupsEndpoint(reportService);
+
+    @Test
+    @DisplayName("Deve reconstruir os consolidados e retornar 409 se outro nó já estiver reconstruindo.")
+    public void rebuildTest() {
+        given(reportService.rebuildRollups()).willReturn(true, false);
+
+        assertThat(endpoint.rebuild().getStatus()).isEqualTo(204);
+        assertThat(endpoint.rebuild().getStatus()).isEqualTo(409);
+    }
+}
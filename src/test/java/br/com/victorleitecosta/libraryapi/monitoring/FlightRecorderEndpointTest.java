@@ -0,0 +1,82 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlightRecorderEndpointTest {
+
+    FlightRecorderEndpoint endpoint = new FlightRecorderEndpoint(60, 120);
+
+    @AfterEach
+    public void tearDown() {
+        endpoint.close();
+    }
+
+    @Test
+    @DisplayName("Deve iniciar uma gravação limitando a duração e recusar uma segunda simultânea.")
+    public void startRecordingTest() {
+        WebEndpointResponse<FlightRecorderEndpoint.RecordingStatus> started = endpoint.start(3600L, "profile");
+        WebEndpointResponse<FlightRecorderEndpoint.RecordingStatus> again = endpoint.start(null, null);
+
+        assertThat(started.getStatus()).isEqualTo(200);
+        assertThat(started.getBody().getState()).isEqualTo("RUNNING");
+        assertThat(started.getBody().getDuration()).isEqualTo(Duration.ofSeconds(120));
+        assertThat(again.getStatus()).isEqualTo(409);
+    }
+
+    @Test
+    @DisplayName("Deve recusar configurações de gravação desconhecidas.")
+    public void unknownSettingsTest() {
+        assertThat(endpoint.start(null, "inexistente").getStatus()).isEqualTo(400);
+        assertThat(endpoint.current().getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    @DisplayName("Deve parar a gravação e devolver o arquivo com os eventos das requisições.")
+    public void stopAndDownloadRecordingTest() throws Exception {
+        long id = endpoint.start(null, null).getBody().getId();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/books/{id}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FlightRecorderInterceptor interceptor = new FlightRecorderInterceptor();
+        interceptor.preHandle(request, response, new Object());
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertThat(endpoint.stop().getBody().getState()).isEqualTo("STOPPED");
+        WebEndpointResponse<Resource> download = endpoint.download(id);
+
+        Path file = Files.createTempFile("recording", ".jfr");
+        try (InputStream in = download.getBody().getInputStream()) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        assertThat(events)
+                .filteredOn(event -> event.getEventType().getName().equals("library.HttpRequest"))
+                .singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getString("path")).isEqualTo("/api/books/{id}");
+                    assertThat(event.getInt("status")).isEqualTo(200);
+                });
+        assertThat(endpoint.download(id + 1).getStatus()).isEqualTo(404);
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.victorleitecosta.libraryapi.monitoring;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.db.slow-query.threshold=0",
+        "application.mail.outbox.poll-interval=3600000"
+})
+public class QueryStatisticsEndpointTest {
+
+    @Autowired
+    QueryStatisticsEndpoint endpoint;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @BeforeEach
+    public void setUp() {
+        endpoint.reset();
+    }
+
+    @Test
+    @DisplayName("Deve expor as estatísticas por consulta e por entidade.")
+    public void queryStatisticsTest() {
+        bookRepository.save(Book.builder().title("A tribo").author("Lindinho").isbn("123").build());
+        loanRepository.findByBookIsbnOrCustomer("123", "Cláudio", PageRequest.of(0, 10));
+        loanRepository.findByBookIsbnOrCustomer("321", "Cláudio", PageRequest.of(0, 10));
+
+        QueryStatisticsEndpoint.QueryReport report = endpoint.queries(null);
+
+        assertThat(report.isStatisticsEnabled()).isTrue();
+        assertThat(report.getQueries())
+                .anySatisfy(query -> {
+                    assertThat(query.getQuery()).contains("Loan").contains("isbn");
+                    assertThat(query.getExecutionCount()).isEqualTo(2);
+                });
+        assertThat(report.getEntities())
+                .anySatisfy(entity -> {
+                    assertThat(entity.getEntity()).endsWith("Book");
+                    assertThat(entity.getInserts()).isEqualTo(1);
+                });
+    }
+
+    @Test
+    @DisplayName("Deve registrar as consultas lentas apenas com os tipos dos parâmetros.")
+    public void slowQueryShapesTest() {
+        loanRepository.findByBookIsbnOrCustomer("123", "Cláudio", PageRequest.of(0, 10));
+
+        assertThat(endpoint.queries(null).getSlowQueries())
+                .anySatisfy(slowQuery -> {
+                    assertThat(slowQuery.getSql()).containsIgnoringCase("from loan");
+                    assertThat(slowQuery.getParameters()).hasSize(1);
+                    assertThat(slowQuery.getParameters().get(0)).startsWith("String", "String");
+                    assertThat(slowQuery.toString()).doesNotContain("Cláudio");
+                });
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.dto.BookImportResultDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookImportService;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.impl.BookImportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.validation.Validation;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import static br.com.victorleitecosta.libraryapi.api.service.DataFormat.CSV;
+import static br.com.victorleitecosta.libraryapi.api.service.DataFormat.NDJSON;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookImportServiceTest {
+
+    BookImportService service;
+
+    @MockBean
+    BookService bookService;
+
+    @MockBean
+    BookRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        this.service = new BookImportServiceImpl(bookService, repository,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), 2);
+    }
+
+    @Test
+    @DisplayName("Deve importar livros de um NDJSON em lotes e reportar as linhas inválidas.")
+    public void importNdjsonTest() throws Exception {
+        String payload = "{\"title\":\"A tribo\",\"author\":\"Lindinho\",\"isbn\":\"001\"}\n" +
+                "{\"title\":\"\",\"author\":\"Lindinho\",\"isbn\":\"002\"}\n" +
+                "nao e json\n" +
+                "{\"title\":\"O Hobbit\",\"author\":\"Tolkien\",\"isbn\":\"003\"}\n" +
+                "{\"title\":\"Dom Casmurro\",\"author\":\"Machado\",\"isbn\":\"004\"}\n";
+        when(repository.findExistingIsbns(anyCollection())).thenReturn(singletonList("003"));
+
+        BookImportResultDTO result = service.importBooks(reader(payload), NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting("line").containsExactly(2L, 3L, 4L);
+        assertThat(result.getErrors().get(2).getErrors()).containsExactly("Isbn já cadastrado.");
+        verify(bookService, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Deve reportar como falhas as linhas do lote que o banco recusar e seguir com os demais.")
+    @SuppressWarnings("unchecked")
+    public void failedChunkTest() throws Exception {
+        String payload = "{\"title\":\"A tribo\",\"author\":\"Lindinho\",\"isbn\":\"001\"}\n" +
+                "{\"title\":\"O Hobbit\",\"author\":\"Tolkien\",\"isbn\":\"002\"}\n" +
+                "{\"title\":\"Dom Casmurro\",\"author\":\"Machado\",\"isbn\":\"003\"}\n";
+        when(bookService.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("isbn"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        BookImportResultDTO result = service.importBooks(reader(payload), NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("line").containsExactly(1L, 2L);
+        assertThat(result.getErrors().get(0).getErrors()).containsExactly("Erro ao gravar o lote.");
+        verify(bookService, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Deve importar livros de um CSV ignorando o cabeçalho e isbns repetidos no arquivo.")
+    public void importCsvTest() throws Exception {
+        String payload = "title,author,isbn\n" +
+                "\"Senhor dos Anéis, O\",Tolkien,001\n" +
+                "A tribo,Lindinho,001\n" +
+                "campos,faltando\n";
+
+        BookImportResultDTO result = service.importBooks(reader(payload), CSV);
+
+        ArgumentCaptor<List<Book>> saved = ArgumentCaptor.forClass(List.class);
+        verify(bookService, times(1)).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting("title").containsExactly("Senhor dos Anéis, O");
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting("line").containsExactlyInAnyOrder(3L, 4L);
+    }
+
+    private BufferedReader reader(String payload) {
+        return new BufferedReader(new StringReader(payload));
+    }
+}
@@ -0,0 +1,158 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.BOOKS_BY_ISBN;
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.BOOK_COUNTS;
+import static br.com.victorleitecosta.libraryapi.config.CacheConfig.ISBN_EXISTS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookIsbnCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(BOOKS_BY_ISBN).clear();
+        cacheManager.getCache(ISBN_EXISTS).clear();
+    }
+
+    @Test
+    @DisplayName("Não deve guardar entrada negativa para isbn inexistente.")
+    public void noNegativeEntryTest() {
+        String isbn = "cache-001";
+
+        assertThat(service.getBookByIsbn(isbn)).isEmpty();
+        assertThat(repository.existsByIsbn(isbn)).isFalse();
+        assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get(isbn)).isNull();
+        assertThat(cacheManager.getCache(ISBN_EXISTS).get(isbn)).isNull();
+
+        Book saved = service.save(Book.builder().title("A tribo").author("Lindinho").isbn(isbn).build());
+
+        assertThat(repository.existsByIsbn(isbn)).isTrue();
+        assertThat(cacheManager.getCache(ISBN_EXISTS).get(isbn)).isNotNull();
+        assertThat(service.getBookByIsbn(isbn)).map(Book::getId).contains(saved.getId());
+
+        service.delete(saved);
+    }
+
+    @Test
+    @DisplayName("Deve invalidar a entrada do isbn apenas quando a transação for confirmada.")
+    public void evictOnCommitTest() {
+        String isbn = "cache-007";
+        Book book = service.save(Book.builder().title("A tribo").author("Lindinho").isbn(isbn).build());
+        assertThat(repository.findByIsbn(isbn)).isPresent();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            repository.evictByIsbn(isbn);
+            assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get(isbn)).isNotNull();
+        });
+
+        assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get(isbn)).isNull();
+
+        repository.findByIsbn(isbn);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            repository.evictByIsbn(isbn);
+            status.setRollbackOnly();
+        });
+
+        assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get(isbn)).isNotNull();
+
+        service.delete(book);
+    }
+
+    @Test
+    @DisplayName("Deve servir a busca por isbn do cache e invalidar a entrada ao atualizar o livro.")
+    public void cachedLookupEvictedOnUpdateTest() {
+        String isbn = "cache-002";
+        Book book = service.save(Book.builder().title("A tribo").author("Lindinho").isbn(isbn).build());
+
+        Optional<Book> first = repository.findByIsbn(isbn);
+        Optional<Book> second = repository.findByIsbn(isbn);
+        assertThat(second.get()).isSameAs(first.get());
+
+        book.setTitle("A tribo II");
+        book = service.update(book);
+
+        assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get(isbn)).isNull();
+        assertThat(repository.findByIsbn(isbn)).map(Book::getTitle).contains("A tribo II");
+
+        service.delete(book);
+        assertThat(repository.existsByIsbn(isbn)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve invalidar ao importar em lote apenas as entradas dos isbns importados.")
+    public void saveAllEvictsImportedIsbnsTest() {
+        Book other = service.save(Book.builder().title("Outro").author("Lindinho").isbn("cache-006").build());
+        assertThat(service.getBookByIsbn("cache-005")).isEmpty();
+        assertThat(service.getBookByIsbn("cache-006")).isPresent();
+
+        List<Book> saved = service.saveAll(List.of(
+                Book.builder().title("Lote").author("Lindinho").isbn("cache-005").build()));
+
+        assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get("cache-005")).isNull();
+        assertThat(cacheManager.getCache(BOOKS_BY_ISBN).get("cache-006")).isNotNull();
+        assertThat(service.getBookByIsbn("cache-005")).map(Book::getId).contains(saved.get(0).getId());
+
+        service.delete(saved.get(0));
+        service.delete(other);
+    }
+
+    @Test
+    @DisplayName("Deve servir o total aproximado do cache até a entrada expirar.")
+    public void approximateCountCachedTest() {
+        cacheManager.getCache(BOOK_COUNTS).clear();
+        Book book = service.save(Book.builder().title("Contagem").author("Lindinho").isbn("cache-003").build());
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        Page<Book> first = service.findApproximate(Book.builder().title("Contagem").build(), pageRequest);
+        Book other = service.save(Book.builder().title("Contagem").author("Lindinho").isbn("cache-004").build());
+        Page<Book> second = service.findApproximate(Book.builder().title("Contagem").build(), pageRequest);
+
+        assertThat(first.getTotalElements()).isEqualTo(1);
+        assertThat(second.getContent()).hasSize(2);
+        assertThat(second.getTotalElements()).isEqualTo(2);
+        assertThat(cacheManager.getCache(BOOK_COUNTS).get(
+                Example.of(Book.builder().title("Contagem").build(), ExampleMatcher.matching()
+                        .withIgnoreCase()
+                        .withIgnoreNullValues()
+                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)))).isNotNull();
+
+        service.delete(book);
+        service.delete(other);
+    }
+}
@@ -0,0 +1,108 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @MockBean
+    BookRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        this.index = new BookSearchIndex(repository, false);
+        index.index(Book.builder().id(1L).title("O Senhor dos Anéis").author("Tolkien").isbn("001").build());
+        index.index(Book.builder().id(2L).title("O Hobbit").author("Tolkien").isbn("002").build());
+        index.index(Book.builder().id(3L).title("Anéis de Saturno").author("Sebald").isbn("003").build());
+    }
+
+    @Test
+    @DisplayName("Deve ranquear primeiro os livros que casam mais termos.")
+    public void rankByMatchedTermsTest() {
+        Page<Long> result = index.search("anéis tolkien", PageRequest.of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).containsExactly(1L, 3L, 2L);
+    }
+
+    @Test
+    @DisplayName("Deve buscar ignorando acentos, caixa e por prefixo.")
+    public void normalizedPrefixSearchTest() {
+        Page<Long> result = index.search("ANEI", PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).containsExactlyInAnyOrder(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve paginar os resultados ranqueados.")
+    public void pagedSearchTest() {
+        Page<Long> result = index.search("tolkien", PageRequest.of(1, 1));
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve reindexar um livro atualizado e remover um livro deletado.")
+    public void updateAndRemoveTest() {
+        index.index(Book.builder().id(2L).title("Silmarillion").author("Tolkien").isbn("002").build());
+        index.remove(1L);
+
+        assertThat(index.search("hobbit", PageRequest.of(0, 10)).getContent()).isEmpty();
+        assertThat(index.search("tolkien", PageRequest.of(0, 10)).getContent()).containsExactly(2L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir o índice a partir da base.")
+    public void rebuildTest() {
+        Book book = Book.builder().id(10L).title("Dom Casmurro").author("Machado de Assis").isbn("010").build();
+        when(repository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<Book>(asList(book), PageRequest.of(0, 1000), 1));
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("casmurro", PageRequest.of(0, 10)).getContent()).containsExactly(10L);
+    }
+
+    @Test
+    @DisplayName("Deve manter as alterações feitas enquanto o índice é reconstruído.")
+    public void changesDuringRebuildTest() {
+        Book stale = Book.builder().id(10L).title("Dom Casmurro").author("Machado de Assis").isbn("010").build();
+        Book removed = Book.builder().id(11L).title("Memórias Póstumas").author("Machado de Assis").isbn("011").build();
+        when(repository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            index.index(Book.builder().id(10L).title("Quincas Borba").author("Machado de Assis").isbn("010").build());
+            index.index(Book.builder().id(12L).title("Helena").author("Machado de Assis").isbn("012").build());
+            index.remove(11L);
+            return new PageImpl<Book>(asList(stale, removed), PageRequest.of(0, 1000), 2);
+        });
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("casmurro", PageRequest.of(0, 10)).getContent()).isEmpty();
+        assertThat(index.search("machado", PageRequest.of(0, 10)).getContent()).containsExactly(10L, 12L);
+    }
+}
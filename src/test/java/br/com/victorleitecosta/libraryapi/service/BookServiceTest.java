@@ -1,10 +1,17 @@
 package br.com.victorleitecosta.libraryapi.service;
 
+import br.com.victorleitecosta.libraryapi.api.dto.BookAvailabilityDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.CatalogVersionRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookAvailabilityIndex;
+import br.com.victorleitecosta.libraryapi.api.service.BookSearchIndex;
 import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.LibraryMetrics;
 import br.com.victorleitecosta.libraryapi.api.service.impl.BookServiceImpl;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -16,6 +23,8 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -36,12 +45,24 @@ public class BookServiceTest {
     BookService service;
 
 
+    MeterRegistry registry;
+
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    CatalogVersionRepository catalogVersion;
+
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookAvailabilityIndex availabilityIndex;
+
     @BeforeEach
     public void setUp() {
-        this.service = new BookServiceImpl(repository);
+        this.registry = new SimpleMeterRegistry();
+        this.service = new BookServiceImpl(repository, catalogVersion, searchIndex, availabilityIndex, new LibraryMetrics(registry));
     }
 
     @Test
@@ -64,6 +85,29 @@ public class BookServiceTest {
         assertThat(savedBook.getTitle()).isEqualTo("A tribo");
         assertThat(savedBook.getAuthor()).isEqualTo("Lindinho");
         assertThat(savedBook.getIsbn()).isEqualTo("102");
+        verify(searchIndex, times(1)).index(savedBook);
+        assertThat(registry.timer("library.books", "operation", "save", "outcome", "success").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve indexar o livro salvo apenas depois do commit da transação.")
+    public void indexAfterCommitTest() {
+        Book book = createValidBook();
+        Book savedBook = Book.builder().id(1L).title("A tribo").author("Lindinho").isbn("102").build();
+        when(repository.existsByIsbn(anyString())).thenReturn(false);
+        when(repository.save(book)).thenReturn(savedBook);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.save(book);
+            verify(searchIndex, never()).index(any(Book.class));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(searchIndex).index(savedBook);
     }
 
     @Test
@@ -125,6 +169,8 @@ public class BookServiceTest {
 
 //        Verificações
         verify(repository, times(1)).delete(book);
+        verify(catalogVersion, times(1)).increment();
+        verify(searchIndex, times(1)).remove(1L);
     }
 
     @Test
@@ -198,6 +244,26 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve buscar livros pelo índice de texto mantendo a ordem do ranking.")
+    public void searchBookTest() {
+//        Cenário
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Book first = Book.builder().id(2L).title("A tribo").build();
+        Book second = Book.builder().id(1L).title("A tribo perdida").build();
+
+        when(searchIndex.search("tribo", pageRequest))
+                .thenReturn(new PageImpl<Long>(asList(2L, 1L), pageRequest, 2));
+        when(repository.findAllById(asList(2L, 1L))).thenReturn(asList(second, first));
+
+//        Execução
+        Page<Book> result = service.search("tribo", pageRequest);
+
+//        Verificações
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).containsExactly(first, second);
+    }
+
     @Test
     @DisplayName("Deve obter um livro pelo isbn.")
     public void getBookByIsbnTest() {
@@ -217,4 +283,17 @@ public class BookServiceTest {
         return Book.builder().title("A tribo").author("Lindinho").isbn("102").build();
     }
 
+    @Test
+    @DisplayName("Deve informar a disponibilidade dos livros pelo índice, sem consultar os empréstimos.")
+    public void getAvailabilityTest() {
+        List<String> isbns = asList("001", "002");
+        when(repository.findAvailabilityByIsbnIn(isbns))
+                .thenReturn(asList(new BookAvailabilityDTO(1L, "001"), new BookAvailabilityDTO(2L, "002")));
+        when(availabilityIndex.isLoaned(1L)).thenReturn(true);
+        when(availabilityIndex.isLoaned(2L)).thenReturn(false);
+
+        List<BookAvailabilityDTO> result = service.getAvailability(isbns);
+
+        assertThat(result).extracting(BookAvailabilityDTO::isAvailable).containsExactly(false, true);
+    }
 }
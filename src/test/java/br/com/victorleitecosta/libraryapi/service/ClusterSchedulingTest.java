@@ -0,0 +1,142 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.LibraryApiApplication;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobCheckpoint;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobPartition;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobStatus;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobCheckpointRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobPartitionRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.OutboxMailRepository;
+import br.com.victorleitecosta.libraryapi.api.service.JobLockService;
+import br.com.victorleitecosta.libraryapi.api.service.ScheduleService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static java.time.LocalDate.now;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts two nodes of the application on the same H2 database, as they
+ * would run behind the load balancer, and fires the late loans job on both
+ * at the same time.
+ */
+public class ClusterSchedulingTest {
+
+    private static final int CUSTOMERS = 5;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    @DisplayName("Deve permitir que apenas um nó detenha o lock de um job.")
+    public void onlyOneNodeHoldsTheLockTest() {
+        ConfigurableApplicationContext first = startNode("lock", "node-1", false);
+        ConfigurableApplicationContext second = startNode("lock", "node-2", false);
+        JobLockService firstLock = first.getBean(JobLockService.class);
+        JobLockService secondLock = second.getBean(JobLockService.class);
+
+        assertThat(firstLock.tryLock("job", Duration.ofMinutes(1))).isTrue();
+        assertThat(secondLock.tryLock("job", Duration.ofMinutes(1))).isFalse();
+        assertThat(secondLock.renew("job", Duration.ofMinutes(1))).isFalse();
+
+        firstLock.unlock("job");
+        assertThat(secondLock.tryLock("job", Duration.ZERO)).isTrue();
+        assertThat(firstLock.tryLock("job", Duration.ofMinutes(1))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve enviar um único resumo por cliente quando todos os nós executam o job.")
+    public void runLateLoansJobOnceAcrossNodesTest() {
+        ConfigurableApplicationContext first = startNode("single", "node-1", false);
+        ConfigurableApplicationContext second = startNode("single", "node-2", false);
+        createLateLoans(first);
+
+        runOnBothNodes(first, second);
+
+        assertThat(recipients(first)).hasSize(CUSTOMERS).doesNotHaveDuplicates();
+        JobCheckpoint checkpoint = first.getBean(JobCheckpointRepository.class).findById("lateLoans").get();
+        assertThat(checkpoint.getStatus()).isEqualTo(JobStatus.COMPLETED);
+    }
+
+    @Test
+    @DisplayName("Deve dividir o job em partições processadas pelos nós sem repetir clientes.")
+    public void partitionedRunAcrossNodesTest() {
+        ConfigurableApplicationContext first = startNode("partitioned", "node-1", true);
+        ConfigurableApplicationContext second = startNode("partitioned", "node-2", true);
+        createLateLoans(first);
+
+        runOnBothNodes(first, second);
+        second.getBean(ScheduleService.class).pollPartitions();
+
+        assertThat(recipients(first)).hasSize(CUSTOMERS).doesNotHaveDuplicates();
+        List<JobPartition> partitions = first.getBean(JobPartitionRepository.class).findAll();
+        assertThat(partitions).hasSize(3).allMatch(partition -> partition.getStatus() == JobStatus.COMPLETED);
+        JobCheckpoint checkpoint = first.getBean(JobCheckpointRepository.class).findById("lateLoans").get();
+        assertThat(checkpoint.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(checkpoint.getWatermark()).isEqualTo(now().atStartOfDay());
+    }
+
+    private ConfigurableApplicationContext startNode(String database, String nodeId, boolean partitioned) {
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--spring.datasource.url=jdbc:h2:mem:cluster-" + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--application.scheduling.node-id=" + nodeId,
+                        "--application.mail.lateloans.partitioned=" + partitioned,
+                        "--application.mail.lateloans.partition-size=2",
+                        "--application.mail.lateloans.chunk-size=1",
+                        "--application.mail.lateloans.partition-poll=3600000",
+                        "--application.mail.outbox.poll-interval=3600000");
+        nodes.add(node);
+        return node;
+    }
+
+    private static void createLateLoans(ConfigurableApplicationContext node) {
+        BookRepository bookRepository = node.getBean(BookRepository.class);
+        LoanRepository loanRepository = node.getBean(LoanRepository.class);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Book book = bookRepository.save(Book.builder().title("A tribo").author("Lindinho").isbn("00" + i).build());
+            loanRepository.save(Loan.builder()
+                    .book(book)
+                    .customer("Cláudio")
+                    .customerEmail("cliente" + i + "@email.com")
+                    .loanDate(now().minusDays(10))
+                    .dueAt(now().minusDays(6).atStartOfDay())
+                    .returned(false)
+                    .build());
+        }
+    }
+
+    private static void runOnBothNodes(ConfigurableApplicationContext first, ConfigurableApplicationContext second) {
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> first.getBean(ScheduleService.class).sendMailToLateLoans()),
+                CompletableFuture.runAsync(() -> second.getBean(ScheduleService.class).sendMailToLateLoans())
+        ).join();
+    }
+
+    private static List<String> recipients(ConfigurableApplicationContext node) {
+        return node.getBean(OutboxMailRepository.class).findAll().stream()
+                .map(OutboxMail::getRecipient)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,78 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
+import br.com.victorleitecosta.libraryapi.api.model.repository.BookRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import br.com.victorleitecosta.libraryapi.api.service.ExportService;
+import br.com.victorleitecosta.libraryapi.api.service.impl.ExportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+
+import static br.com.victorleitecosta.libraryapi.api.service.DataFormat.CSV;
+import static br.com.victorleitecosta.libraryapi.api.service.DataFormat.NDJSON;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class ExportServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    ExportService service;
+
+    @BeforeEach
+    public void setUp() {
+        this.service = new ExportServiceImpl(bookRepository, loanRepository,
+                entityManager.getEntityManager(), new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo em NDJSON, uma linha por livro.")
+    public void exportBooksNdjsonTest() throws Exception {
+        Book first = entityManager.persist(Book.builder().title("A tribo").author("Lindinho").isbn("001").build());
+        Book second = entityManager.persist(Book.builder().title("O Hobbit").author("Tolkien").isbn("002").build());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.exportBooks(NDJSON, output);
+
+        assertThat(output.toString(UTF_8)).isEqualTo(
+                "{\"id\":" + first.getId() + ",\"title\":\"A tribo\",\"author\":\"Lindinho\",\"isbn\":\"001\"}\n" +
+                "{\"id\":" + second.getId() + ",\"title\":\"O Hobbit\",\"author\":\"Tolkien\",\"isbn\":\"002\"}\n");
+    }
+
+    @Test
+    @DisplayName("Deve exportar o histórico de empréstimos em CSV.")
+    public void exportLoansCsvTest() throws Exception {
+        Book book = entityManager.persist(Book.builder().title("A tribo").author("Lindinho").isbn("001").build());
+        Loan loan = entityManager.persist(Loan.builder().book(book).customer("Silva, Cláudio")
+                .customerEmail("claudio@email.com").loanDate(LocalDate.of(2021, 1, 10)).returned(true).build());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.exportLoans(CSV, output);
+
+        assertThat(output.toString(UTF_8)).isEqualTo(
+                "id,customer,customerEmail,isbn,loanDate,returned\n" +
+                loan.getId() + ",\"Silva, Cláudio\",claudio@email.com,001,2021-01-10,true\n");
+    }
+}
@@ -0,0 +1,82 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.service.HierarchicalTimingWheel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long MINUTE = 60 * TICK;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    HierarchicalTimingWheel<Long> wheel;
+    List<Long> expired;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new HierarchicalTimingWheel<>(TICK, 60, 0);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Deve expirar os timers na ordem dos seus ticks.")
+    public void expireInOrderTest() {
+        wheel.schedule(3L, 30 * TICK);
+        wheel.schedule(1L, 5 * TICK);
+        wheel.schedule(2L, 10 * TICK);
+
+        wheel.advanceTo(9 * TICK, expired::add);
+        assertThat(expired).containsExactly(1L);
+
+        wheel.advanceTo(30 * TICK, expired::add);
+        assertThat(expired).containsExactly(1L, 2L, 3L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve descer os timers distantes pelos níveis até expirarem no tick certo.")
+    public void cascadeFromUpperLevelsTest() {
+        long dueAt = 3 * DAY + 5 * HOUR + 7 * MINUTE + 11 * TICK;
+        wheel.schedule(1L, dueAt);
+
+        wheel.advanceTo(dueAt - TICK, expired::add);
+        assertThat(expired).isEmpty();
+        assertThat(wheel.contains(1L)).isTrue();
+
+        wheel.advanceTo(dueAt, expired::add);
+        assertThat(expired).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Não deve expirar timers cancelados ou substituídos.")
+    public void cancelAndRescheduleTest() {
+        wheel.schedule(1L, 5 * TICK);
+        wheel.schedule(2L, 5 * TICK);
+        wheel.cancel(1L);
+        wheel.schedule(2L, 2 * HOUR);
+
+        wheel.advanceTo(HOUR, expired::add);
+        assertThat(expired).isEmpty();
+
+        wheel.advanceTo(2 * HOUR, expired::add);
+        assertThat(expired).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve recusar timers que já venceram.")
+    public void rejectExpiredTimerTest() {
+        wheel.advanceTo(10 * TICK, expired::add);
+
+        assertThat(wheel.schedule(1L, 10 * TICK + TICK / 2)).isFalse();
+        assertThat(wheel.schedule(2L, 11 * TICK)).isTrue();
+        assertThat(wheel.contains(1L)).isFalse();
+    }
+}
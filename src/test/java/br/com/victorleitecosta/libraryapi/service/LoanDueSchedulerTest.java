@@ -0,0 +1,120 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDueDTO;
+import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import br.com.victorleitecosta.libraryapi.api.service.LoanDueScheduler;
+import br.com.victorleitecosta.libraryapi.api.service.LoansDueEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanDueSchedulerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, 3, 1, 10, 0);
+
+    LoanDueScheduler scheduler;
+    MutableClock clock;
+    List<LoansDueEvent> events;
+
+    @MockBean
+    LoanRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(START.toInstant(ZoneOffset.UTC));
+        events = new ArrayList<>();
+        ApplicationEventPublisher publisher = event -> events.add((LoansDueEvent) event);
+        scheduler = new LoanDueScheduler(repository, publisher, clock, 1000);
+    }
+
+    @Test
+    @DisplayName("Deve carregar os prazos do banco e disparar na hora os que já venceram.")
+    public void loadTest() {
+        when(repository.findPendingDueDates()).thenReturn(asList(
+                new LoanDueDTO(1L, START.minusHours(2)),
+                new LoanDueDTO(2L, START.plusHours(3))));
+
+        scheduler.load();
+
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getLoanIds()).containsExactly(1L);
+        assertThat(scheduler.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve disparar os empréstimos no seu prazo, agrupando os que vencem no mesmo tick.")
+    public void tickTest() {
+        scheduler.schedule(1L, START.plusHours(5));
+        scheduler.schedule(2L, START.plusHours(5));
+        scheduler.schedule(3L, START.plusDays(2));
+
+        clock.set(START.plusHours(5).minusSeconds(1));
+        scheduler.tick();
+        assertThat(events).isEmpty();
+
+        clock.set(START.plusHours(5));
+        scheduler.tick();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getLoanIds()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(scheduler.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve disparar empréstimos devolvidos antes do prazo.")
+    public void cancelTest() {
+        scheduler.schedule(1L, START.plusHours(1));
+        scheduler.cancel(1L);
+
+        clock.set(START.plusHours(2));
+        scheduler.tick();
+
+        assertThat(events).isEmpty();
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void set(LocalDateTime dateTime) {
+            this.instant = dateTime.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -1,22 +1,40 @@
 package br.com.victorleitecosta.libraryapi.service;
 
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchItemDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanBatchStatus;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanDTO;
 import br.com.victorleitecosta.libraryapi.api.dto.LoanFilterDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LoanStateDTO;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
 import br.com.victorleitecosta.libraryapi.api.model.entity.Loan;
 import br.com.victorleitecosta.libraryapi.api.model.repository.LoanRepository;
+import br.com.victorleitecosta.libraryapi.api.service.BookAvailabilityIndex;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.api.service.CirculationRollups;
+import br.com.victorleitecosta.libraryapi.api.service.LibraryMetrics;
+import br.com.victorleitecosta.libraryapi.api.service.LoanDueScheduler;
 import br.com.victorleitecosta.libraryapi.api.service.LoanService;
 import br.com.victorleitecosta.libraryapi.api.service.impl.LoanServiceImpl;
 import br.com.victorleitecosta.libraryapi.exception.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.time.LocalDate.now;
@@ -34,13 +52,26 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class LoanServiceTest {
 
     LoanService service;
+    BookAvailabilityIndex availabilityIndex;
+    MeterRegistry registry;
 
     @MockBean
     LoanRepository repository;
 
+    @MockBean
+    LoanDueScheduler dueScheduler;
+
+    @MockBean
+    BookService bookService;
+
+    @MockBean
+    CirculationRollups rollups;
+
     @BeforeEach
     public void setUp() {
-        this.service = new LoanServiceImpl(repository);
+        this.availabilityIndex = new BookAvailabilityIndex(repository);
+        this.registry = new SimpleMeterRegistry();
+        this.service = new LoanServiceImpl(repository, bookService, availabilityIndex, dueScheduler, rollups, new LibraryMetrics(registry), 4, 60);
     }
 
     @Test
@@ -62,7 +93,6 @@ public class LoanServiceTest {
                 .book(book)
                 .build();
 
-        when(repository.existsByBookAndReturnedIsNullOrReturnedIsFalse(book)).thenReturn(false);
         when(repository.save(savingLoan)).thenReturn(savedLoan);
 
         Loan loan = service.save(savingLoan);
@@ -71,6 +101,10 @@ public class LoanServiceTest {
         assertThat(loan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+        assertThat(availabilityIndex.isLoaned(book.getId())).isTrue();
+        verify(repository, never()).existsByBookAndReturnedIsNullOrReturnedIsFalse(book);
+        verify(dueScheduler).schedule(savedLoan.getId(), savedLoan.getDueAt());
+        verify(rollups).recordLoans(List.of(savedLoan));
 
     }
 
@@ -93,13 +127,15 @@ public class LoanServiceTest {
                 .book(book)
                 .build();
 
-        when(repository.existsByBookAndReturnedIsNullOrReturnedIsFalse(book)).thenReturn(true);
+        availabilityIndex.markLoaned(book.getId());
 
         Throwable exception = catchThrowable(() -> service.save(savingLoan));
 
         assertThat(exception)
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Book already loaned");
+        assertThat(registry.counter("library.loans.conflicts").count()).isEqualTo(1);
+        assertThat(registry.timer("library.loans", "operation", "save", "outcome", "rejected").count()).isEqualTo(1);
 
         verify(repository, never()).save(savingLoan);
 
@@ -144,6 +180,94 @@ public class LoanServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve liberar o livro e cancelar os lembretes ao devolver um empréstimo.")
+    public void returnLoanReleasesBookTest() {
+        Loan loan = createLoan();
+        loan.setId(1L);
+        availabilityIndex.markLoaned(loan.getBook().getId());
+        loan.setNextReminderAt(now());
+        loan.setReturned(true);
+
+        when(repository.save(loan)).thenReturn(loan);
+
+        service.update(loan);
+
+        assertThat(availabilityIndex.isLoaned(loan.getBook().getId())).isFalse();
+        assertThat(loan.getNextReminderAt()).isNull();
+        verify(dueScheduler).cancel(loan.getId());
+    }
+
+    @Test
+    @DisplayName("Deve usar o prazo padrão quando o empréstimo não informar a data de devolução.")
+    public void defaultDueDateTest() {
+        Loan loan = createLoan();
+        when(repository.save(loan)).thenReturn(loan);
+
+        service.save(loan);
+
+        assertThat(loan.getDueAt()).isBetween(LocalDateTime.now().plusDays(4).minusMinutes(1), LocalDateTime.now().plusDays(4));
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio para prazo de empréstimo fora dos limites.")
+    public void invalidDueDateTest() {
+        Loan past = createLoan();
+        past.setDueAt(LocalDateTime.now().minusHours(1));
+        Loan tooLong = createLoan();
+        tooLong.setDueAt(LocalDateTime.now().plusDays(61));
+
+        assertThat(catchThrowable(() -> service.save(past)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Prazo do empréstimo inválido.");
+        assertThat(catchThrowable(() -> service.save(tooLong)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Prazo do empréstimo inválido.");
+        verify(repository, never()).save(any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro no índice de disponibilidade quando o empréstimo não for salvo.")
+    public void failedSaveReleasesBookTest() {
+        Loan loan = createLoan();
+
+        when(repository.save(loan)).thenThrow(new IllegalStateException());
+
+        Throwable exception = catchThrowable(() -> service.save(loan));
+
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        assertThat(availabilityIndex.isLoaned(loan.getBook().getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir o índice de disponibilidade a partir dos empréstimos em aberto.")
+    public void rebuildAvailabilityIndexTest() {
+        when(repository.findLoanedBookIds()).thenReturn(asList(2L, 5L));
+
+        availabilityIndex.rebuild();
+
+        assertThat(availabilityIndex.isLoaned(2L)).isTrue();
+        assertThat(availabilityIndex.isLoaned(5L)).isTrue();
+        assertThat(availabilityIndex.isLoaned(1L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve perder um empréstimo marcado enquanto o índice de disponibilidade é reconstruído.")
+    public void markLoanedDuringRebuildTest() throws Exception {
+        Thread marker = new Thread(() -> availabilityIndex.markLoaned(7L));
+        when(repository.findLoanedBookIds()).thenAnswer(invocation -> {
+            marker.start();
+            marker.join(200);
+            return asList(2L);
+        });
+
+        availabilityIndex.rebuild();
+        marker.join();
+
+        assertThat(availabilityIndex.isLoaned(2L)).isTrue();
+        assertThat(availabilityIndex.isLoaned(7L)).isTrue();
+    }
+
     @Test
     @DisplayName("Deve filtrar empréstimos.")
     public void findLoanTest() {
@@ -173,6 +297,195 @@ public class LoanServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve salvar um lote de empréstimos informando o resultado de cada item.")
+    public void saveAllLoansTest() {
+        Book free = Book.builder().id(1L).isbn("001").build();
+        Book loaned = Book.builder().id(2L).isbn("002").build();
+        availabilityIndex.markLoaned(loaned.getId());
+        when(bookService.getBooksByIsbn(anyCollection())).thenReturn(asList(free, loaned));
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Loan> loans = invocation.getArgument(0);
+            loans.forEach(loan -> loan.setId(10L));
+            return loans;
+        });
+
+        List<LoanBatchItemDTO> result = service.saveAll(asList(
+                LoanDTO.builder().isbn("001").costumer("Cláudio").email("cliente@email.com").build(),
+                LoanDTO.builder().isbn("001").costumer("Cláudio").email("cliente@email.com").build(),
+                LoanDTO.builder().isbn("002").costumer("Cláudio").email("cliente@email.com").build(),
+                LoanDTO.builder().isbn("003").costumer("Cláudio").email("cliente@email.com").build(),
+                LoanDTO.builder().isbn("001").days(90).costumer("Cláudio").email("cliente@email.com").build()));
+
+        assertThat(result).extracting(LoanBatchItemDTO::getStatus).containsExactly(
+                LoanBatchStatus.CREATED,
+                LoanBatchStatus.BOOK_ALREADY_LOANED,
+                LoanBatchStatus.BOOK_ALREADY_LOANED,
+                LoanBatchStatus.BOOK_NOT_FOUND,
+                LoanBatchStatus.INVALID_DUE_DATE);
+        assertThat(result.get(0).getId()).isEqualTo(10L);
+        assertThat(registry.counter("library.loans.conflicts").count()).isEqualTo(2);
+        verify(bookService, times(1)).getBooksByIsbn(anyCollection());
+        verify(repository, times(1)).saveAll(argThat(loans -> ((List<Loan>) loans).size() == 1));
+        verify(dueScheduler).schedule(eq(10L), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Deve liberar os livros do lote quando os empréstimos não forem salvos.")
+    public void saveAllLoansFailureReleasesBooksTest() {
+        Book book = Book.builder().id(1L).isbn("001").build();
+        when(bookService.getBooksByIsbn(anyCollection())).thenReturn(asList(book));
+        when(repository.saveAll(anyList())).thenThrow(new IllegalStateException());
+
+        catchThrowable(() -> service.saveAll(asList(LoanDTO.builder().isbn("001").build())));
+
+        assertThat(availabilityIndex.isLoaned(book.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve devolver um lote de empréstimos com uma única atualização.")
+    public void returnAllLoansTest() {
+        availabilityIndex.markLoaned(5L);
+        when(repository.findStatesForUpdateByIdIn(anyCollection())).thenReturn(asList(
+                new LoanStateDTO(1L, 5L, false, "Cláudio"),
+                new LoanStateDTO(2L, 6L, true, "Cláudio")));
+        when(repository.markReturned(asList(1L))).thenReturn(1);
+
+        List<LoanBatchItemDTO> result = service.returnAll(asList(1L, 2L, 3L, 1L));
+
+        assertThat(result).extracting(LoanBatchItemDTO::getId).containsExactly(1L, 2L, 3L);
+        assertThat(result).extracting(LoanBatchItemDTO::getStatus).containsExactly(
+                LoanBatchStatus.RETURNED,
+                LoanBatchStatus.ALREADY_RETURNED,
+                LoanBatchStatus.LOAN_NOT_FOUND);
+        verify(repository).markReturned(asList(1L));
+        verify(rollups).recordReturns(Map.of("Cláudio", 1L));
+        verify(dueScheduler).cancel(1L);
+        assertThat(availabilityIndex.isLoaned(5L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve contabilizar devoluções que outra transação já fez.")
+    public void concurrentReturnNotRecordedTest() {
+        availabilityIndex.markLoaned(5L);
+        when(repository.findStatesForUpdateByIdIn(anyCollection())).thenReturn(asList(
+                new LoanStateDTO(1L, 5L, false, "Cláudio")));
+        when(repository.markReturned(asList(1L))).thenReturn(0);
+
+        Throwable exception = catchThrowable(() -> service.returnAll(asList(1L)));
+
+        assertThat(exception).isInstanceOf(ConcurrencyFailureException.class);
+        verify(rollups, never()).recordReturns(anyMap());
+        verify(dueScheduler, never()).cancel(anyLong());
+        assertThat(availabilityIndex.isLoaned(5L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve reservar os empréstimos para lembrete com uma única atualização.")
+    public void claimLoansToRemindTest() {
+        List<Long> ids = asList(1L, 2L);
+        when(repository.claimFirstNotices(ids, "node-1:a", now(), now().plusDays(7))).thenReturn(1);
+        when(repository.findClaimedLoans(ids, "node-1:a")).thenReturn(asList(
+                new LateLoanDTO(1L, "Cláudio", "claudio@email.com", "123", "A tribo")));
+
+        List<LateLoanDTO> loans = service.claimLoansToRemind(ids, "node-1:a", now(), now().plusDays(7));
+
+        assertThat(loans).extracting(LateLoanDTO::getId).containsExactly(1L);
+        verify(repository, times(1)).claimFirstNotices(ids, "node-1:a", now(), now().plusDays(7));
+    }
+
+    @Test
+    @DisplayName("Deve contabilizar a devolução nos consolidados apenas quando o empréstimo muda de situação.")
+    public void updateLoanRecordsReturnTest() {
+        Loan loan = createLoan();
+        loan.setId(1L);
+        loan.setReturned(true);
+        when(repository.save(loan)).thenReturn(loan);
+        when(repository.findStatesByIdIn(asList(1L)))
+                .thenReturn(asList(new LoanStateDTO(1L, 1L, false, "Cláudio")))
+                .thenReturn(asList(new LoanStateDTO(1L, 1L, true, "Cláudio")));
+
+        service.update(loan);
+        service.update(loan);
+
+        verify(rollups, times(1)).recordReturns(Map.of("Cláudio", 1L));
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro reservado apenas quando a transação do empréstimo for desfeita.")
+    public void rolledBackSaveReleasesBookTest() {
+        Loan loan = createLoan();
+        when(repository.save(loan)).thenReturn(loan);
+
+        List<TransactionSynchronization> synchronizations = inTransaction(() -> service.save(loan));
+
+        assertThat(availabilityIndex.isLoaned(1L)).isTrue();
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertThat(availabilityIndex.isLoaned(1L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro devolvido apenas depois do commit.")
+    public void returnReleasesBookAfterCommitTest() {
+        availabilityIndex.markLoaned(5L);
+        when(repository.findStatesForUpdateByIdIn(anyCollection())).thenReturn(asList(
+                new LoanStateDTO(1L, 5L, false, "Cláudio")));
+        when(repository.markReturned(asList(1L))).thenReturn(1);
+
+        List<TransactionSynchronization> synchronizations = inTransaction(() -> service.returnAll(asList(1L)));
+
+        assertThat(availabilityIndex.isLoaned(5L)).isTrue();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertThat(availabilityIndex.isLoaned(5L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve recusar o empréstimo quando outro nó já emprestou o livro.")
+    public void bookLoanedOnAnotherNodeTest() {
+        Loan loan = createLoan();
+        when(repository.save(loan)).thenReturn(loan);
+        doThrow(new DataIntegrityViolationException("duplicate",
+                new IllegalStateException("Unique index violation: UK_LOAN_OPEN_BOOK_ID")))
+                .when(repository).flush();
+        Book other = Book.builder().id(2L).isbn("002").build();
+        when(bookService.getBooksByIsbn(anyCollection())).thenReturn(asList(other));
+        when(repository.findOpenBookIds(anyCollection())).thenReturn(asList(2L));
+
+        Throwable exception = catchThrowable(() -> service.save(loan));
+        List<LoanBatchItemDTO> result = service.saveAll(asList(LoanDTO.builder().isbn("002").build()));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+        assertThat(availabilityIndex.isLoaned(1L)).isFalse();
+        assertThat(result).extracting(LoanBatchItemDTO::getStatus).containsExactly(LoanBatchStatus.BOOK_ALREADY_LOANED);
+        verify(repository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Deve recusar reabrir um empréstimo cujo livro foi emprestado novamente.")
+    public void reopenLoanedBookTest() {
+        Loan loan = createLoan();
+        loan.setId(1L);
+        loan.setReturned(false);
+        availabilityIndex.markLoaned(1L);
+        when(repository.findStatesByIdIn(asList(1L))).thenReturn(asList(new LoanStateDTO(1L, 1L, true, "Cláudio")));
+
+        Throwable exception = catchThrowable(() -> service.update(loan));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+        verify(repository, never()).save(loan);
+        verify(rollups, never()).recordReturns(anyMap());
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     public static Loan createLoan() {
         Book book = Book.builder().id(1L).build();
         String customer = "Cláudio";
@@ -0,0 +1,171 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxStatus;
+import br.com.victorleitecosta.libraryapi.api.model.repository.OutboxMailRepository;
+import br.com.victorleitecosta.libraryapi.api.service.EmailService;
+import br.com.victorleitecosta.libraryapi.api.service.MailDispatcher;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.mail.Message;
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "application.mail.outbox.poll-interval=3600000",
+        "application.mail.outbox.workers=2",
+        "application.mail.outbox.rate-per-second=1000",
+        "application.mail.outbox.max-attempts=2",
+        "application.mail.outbox.retry-delay=60000"
+})
+public class MailDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    EmailService emailService;
+
+    @Autowired
+    MailDispatcher dispatcher;
+
+    @Autowired
+    OutboxMailRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar e enviar uma mensagem por destinatário.")
+    public void sendOneMessagePerRecipientTest() throws Exception {
+        emailService.sendMails(Map.of(
+                "a@email.com", "Devolva o livro.",
+                "b@email.com", "Devolva o livro.",
+                "c@email.com", "Devolva o livro."));
+
+        dispatcher.dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(3);
+        for (MimeMessage message : received) {
+            assertThat(message.getRecipients(Message.RecipientType.TO)).hasSize(1);
+            assertThat(message.getSubject()).isEqualTo("Livro com empréstimo atrasado.");
+        }
+        assertThat(repository.findAll())
+                .extracting(OutboxMail::getStatus)
+                .containsOnly(OutboxStatus.SENT);
+    }
+
+    @Test
+    @DisplayName("Deve reagendar apenas o email que falhar e enviar os demais.")
+    public void failOnlyTheBrokenMessageTest() {
+        emailService.sendMails(Map.of(
+                "a@email.com", "Devolva o livro.",
+                "b@email.com, c@email.com", "Devolva o livro."));
+
+        dispatcher.dispatch();
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(repository.findAll())
+                .extracting(OutboxMail::getRecipient, OutboxMail::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple("a@email.com", OutboxStatus.SENT),
+                        tuple("b@email.com, c@email.com", OutboxStatus.PENDING));
+    }
+
+    @Test
+    @DisplayName("Deve reagendar com backoff exponencial os emails que falharem e desistir após o máximo de tentativas.")
+    public void retryWithBackoffTest() {
+        greenMail.stop();
+        emailService.sendMails(Map.of("a@email.com", "Devolva o livro."));
+
+        dispatcher.dispatch();
+
+        OutboxMail mail = repository.findAll().get(0);
+        assertThat(mail.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(mail.getAttempts()).isEqualTo(1);
+        assertThat(mail.getLastError()).isNotBlank();
+        assertThat(mail.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(50));
+
+        dispatcher.dispatch();
+        assertThat(repository.findAll().get(0).getAttempts()).isEqualTo(1);
+
+        mail.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        repository.save(mail);
+        dispatcher.dispatch();
+
+        List<OutboxMail> mails = repository.findAll();
+        assertThat(mails.get(0).getStatus()).isEqualTo(OutboxStatus.FAILED);
+        assertThat(mails.get(0).getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve retomar emails cujo envio foi interrompido após o fim da reserva.")
+    public void reclaimExpiredLeaseTest() {
+        repository.save(OutboxMail.builder()
+                .recipient("a@email.com")
+                .subject("Livro com empréstimo atrasado.")
+                .body("Devolva o livro.")
+                .status(OutboxStatus.SENDING)
+                .claimToken("outro-nó")
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        dispatcher.dispatch();
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(repository.findAll().get(0).getStatus()).isEqualTo(OutboxStatus.SENT);
+    }
+
+    @Test
+    @DisplayName("Não deve sobrescrever o resultado de um email reivindicado por outro dispatcher após o fim da reserva.")
+    public void staleWorkerCannotOverwriteNewClaimTest() {
+        OutboxMail stale = repository.save(OutboxMail.builder()
+                .recipient("a@email.com")
+                .subject("Livro com empréstimo atrasado.")
+                .body("Devolva o livro.")
+                .status(OutboxStatus.SENDING)
+                .claimToken("este-nó")
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+                .createdAt(LocalDateTime.now())
+                .build());
+        LocalDateTime now = LocalDateTime.now();
+        repository.claim(singletonList(stale.getId()), "outro-nó", now, now.plusMinutes(5));
+
+        stale.setStatus(OutboxStatus.FAILED);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> repository.save(stale));
+        OutboxMail current = repository.findAll().get(0);
+        assertThat(current.getStatus()).isEqualTo(OutboxStatus.SENDING);
+        assertThat(current.getClaimToken()).isEqualTo("outro-nó");
+    }
+}
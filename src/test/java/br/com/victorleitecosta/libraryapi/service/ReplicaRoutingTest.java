@@ -0,0 +1,94 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.model.entity.Book;
+import br.com.victorleitecosta.libraryapi.api.service.BookService;
+import br.com.victorleitecosta.libraryapi.config.ReadWriteRoutingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the application on two H2 databases, a primary and a "replica" that
+ * only has what the test copies into it, standing in for the replication.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.max-lag=0s",
+        "application.search.rebuild-on-startup=false",
+        "application.mail.outbox.poll-interval=3600000"
+})
+public class ReplicaRoutingTest {
+
+    private static final String COUNT_BOOKS = " select count(*) from book where isbn = 'replica-002' ";
+
+    @Autowired
+    BookService bookService;
+
+    DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing-primary", "sa", "");
+
+    DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:routing-replica", "sa", "");
+
+    JdbcTemplate replicaJdbc;
+
+    @BeforeEach
+    public void setUp() {
+        replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.execute(" drop all objects ");
+        new JdbcTemplate(primary).queryForList(" script nodata ", String.class).stream()
+                .filter(statement -> !statement.startsWith("--"))
+                .forEach(replicaJdbc::execute);
+    }
+
+    @Test
+    @DisplayName("Deve gravar no primário e ler da réplica nas transações somente leitura.")
+    public void readOnlyServiceMethodsReadReplicaTest() {
+        Book book = bookService.save(Book.builder().title("Réplica").author("Lindinho").isbn("replica-001").build());
+
+        assertThat(bookService.getVersion(book.getId())).isEmpty();
+
+        replicaJdbc.update(" insert into book (id, title, author, isbn, version) values (?, ?, ?, ?, ?) ",
+                book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getVersion());
+
+        assertThat(bookService.getVersion(book.getId())).contains(0L);
+        assertThat(bookService.getById(book.getId())).map(Book::getTitle).contains("Réplica");
+    }
+
+    @Test
+    @DisplayName("Deve manter as leituras no primário enquanto durar o atraso tolerado da réplica.")
+    public void replicaLagToleranceTest() {
+        ReadWriteRoutingDataSource routing =
+                new ReadWriteRoutingDataSource(primary, replica, Duration.ofHours(1), Clock.systemDefaultZone());
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        TransactionTemplate readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        readWrite.executeWithoutResult(status -> jdbc.update(
+                " insert into book (id, title, author, isbn, version) values (next value for book_seq, 'Atraso', 'Lindinho', 'replica-002', 0) "));
+        Long read = readOnly.execute(status -> jdbc.queryForObject(COUNT_BOOKS, Long.class));
+
+        assertThat(read).isEqualTo(1);
+        assertThat(replicaJdbc.queryForObject(COUNT_BOOKS, Long.class)).isZero();
+    }
+}
@@ -0,0 +1,416 @@
+package br.com.victorleitecosta.libraryapi.service;
+
+import br.com.victorleitecosta.libraryapi.api.dto.LateCustomerDTO;
+import br.com.victorleitecosta.libraryapi.api.dto.LateLoanDTO;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobCheckpoint;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobPartition;
+import br.com.victorleitecosta.libraryapi.api.model.entity.JobStatus;
+import br.com.victorleitecosta.libraryapi.api.model.entity.OutboxMail;
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobCheckpointRepository;
+import br.com.victorleitecosta.libraryapi.api.model.repository.JobPartitionRepository;
+import br.com.victorleitecosta.libraryapi.api.service.EmailService;
+import br.com.victorleitecosta.libraryapi.api.service.JobLockService;
+import br.com.victorleitecosta.libraryapi.api.service.LibraryMetrics;
+import br.com.victorleitecosta.libraryapi.api.service.LoanService;
+import br.com.victorleitecosta.libraryapi.api.service.LoansDueEvent;
+import br.com.victorleitecosta.libraryapi.api.service.ScheduleService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static java.time.LocalDate.now;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ScheduleServiceTest {
+
+    private static final String MESSAGE = "Livro atrasado.";
+    private static final LocalDateTime DUE_BEFORE = now().atStartOfDay();
+    private static final LocalDateTime FIRST_WATERMARK = LocalDate.EPOCH.atStartOfDay();
+    private static final LocalDateTime WATERMARK = now().minusDays(1).atStartOfDay();
+
+    ScheduleService service;
+
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    EmailService emailService;
+
+    @MockBean
+    JobCheckpointRepository checkpointRepository;
+
+    @MockBean
+    JobPartitionRepository partitionRepository;
+
+    @MockBean
+    JobLockService jobLockService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        this.service = newService(false);
+        when(checkpointRepository.save(any(JobCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(jobLockService.tryLock(anyString(), any())).thenReturn(true);
+        when(jobLockService.renew(anyString(), any())).thenReturn(true);
+        when(jobLockService.getNodeId()).thenReturn("node-1");
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+    }
+
+    @Test
+    @DisplayName("Deve enviar um único resumo por cliente com todos os livros atrasados.")
+    @SuppressWarnings("unchecked")
+    public void sendOneDigestPerCustomerTest() {
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(asList(lateCustomer("a@email.com", 2), lateCustomer("b@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, asList("a@email.com", "b@email.com")))
+                .thenReturn(asList(
+                        lateLoan(1L, "a@email.com", "A tribo"),
+                        lateLoan(4L, "a@email.com", "O Hobbit"),
+                        lateLoan(2L, "b@email.com", "Duna")));
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "b@email.com", null, 2)).thenReturn(emptyList());
+
+        service.sendMailToLateLoans();
+
+        ArgumentCaptor<Map<String, String>> digests = ArgumentCaptor.forClass(Map.class);
+        verify(emailService).sendMails(digests.capture());
+        assertThat(digests.getValue()).containsOnlyKeys("a@email.com", "b@email.com");
+        assertThat(digests.getValue().get("a@email.com"))
+                .startsWith(MESSAGE)
+                .contains("A tribo", "O Hobbit")
+                .doesNotContain("Duna");
+        verify(loanService).markNotified(asList(1L, 4L, 2L), now(), now().plusDays(7));
+        verify(checkpointRepository, atLeastOnce()).save(argThatCheckpoint("b@email.com", JobStatus.COMPLETED));
+    }
+
+    @Test
+    @DisplayName("Deve retomar a execução interrompida do dia a partir do último cliente processado.")
+    public void resumeLateLoansTest() {
+        JobCheckpoint checkpoint = JobCheckpoint.builder()
+                .jobName("lateLoans").runDate(now()).lastKey("a@email.com").watermark(WATERMARK).status(JobStatus.RUNNING).build();
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+        when(loanService.getCustomersToNotifyAfter(WATERMARK, DUE_BEFORE, now(), "a@email.com", null, 2))
+                .thenReturn(singletonList(lateCustomer("b@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, singletonList("b@email.com")))
+                .thenReturn(singletonList(lateLoan(2L, "b@email.com", "Duna")));
+
+        service.resumeLateLoans();
+
+        verify(loanService, never()).getCustomersToNotifyAfter(any(), any(), any(), eq(""), any(), anyInt());
+        verify(emailService).sendMails(anyMap());
+        assertThat(checkpoint.getLastKey()).isEqualTo("b@email.com");
+        assertThat(checkpoint.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(checkpoint.getWatermark()).isEqualTo(DUE_BEFORE);
+    }
+
+    @Test
+    @DisplayName("Deve partir da marca d'água da última execução concluída.")
+    public void startFromPreviousWatermarkTest() {
+        JobCheckpoint previous = JobCheckpoint.builder()
+                .jobName("lateLoans").runDate(now().minusDays(1)).lastKey("z@email.com").watermark(WATERMARK)
+                .status(JobStatus.COMPLETED).build();
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(previous));
+        when(loanService.getCustomersToNotifyAfter(WATERMARK, DUE_BEFORE, now(), "", null, 2)).thenReturn(emptyList());
+
+        service.sendMailToLateLoans();
+
+        verify(loanService).getCustomersToNotifyAfter(WATERMARK, DUE_BEFORE, now(), "", null, 2);
+        verify(checkpointRepository, atLeastOnce()).save(argThat(checkpoint ->
+                checkpoint.getStatus() == JobStatus.COMPLETED && DUE_BEFORE.equals(checkpoint.getWatermark())));
+    }
+
+    @Test
+    @DisplayName("Não deve retomar execuções já concluídas ou de outros dias.")
+    public void doNotResumeFinishedRunTest() {
+        JobCheckpoint checkpoint = JobCheckpoint.builder()
+                .jobName("lateLoans").runDate(now().minusDays(1)).lastKey("a@email.com").status(JobStatus.RUNNING).build();
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+
+        service.resumeLateLoans();
+
+        verify(loanService, never()).getCustomersToNotifyAfter(any(), any(), any(), anyString(), any(), anyInt());
+        verify(emailService, never()).sendMails(anyMap());
+    }
+
+    @Test
+    @DisplayName("Deve iniciar uma nova execução quando a anterior for de outro dia.")
+    public void restartStaleRunTest() {
+        JobCheckpoint checkpoint = JobCheckpoint.builder()
+                .jobName("lateLoans").runDate(now().minusDays(1)).lastKey("a@email.com").status(JobStatus.RUNNING).build();
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2)).thenReturn(emptyList());
+
+        service.sendMailToLateLoans();
+
+        verify(loanService).getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2);
+        verify(emailService, never()).sendMails(anyMap());
+    }
+
+    @Test
+    @DisplayName("Deve enviar o lembrete dos empréstimos que venceram, agrupados por cliente.")
+    @SuppressWarnings("unchecked")
+    public void remindDueLoansTest() {
+        when(loanService.claimLoansToRemind(eq(asList(1L, 2L)), startsWith("node-1:"), eq(now()), eq(now().plusDays(7))))
+                .thenReturn(asList(lateLoan(1L, "a@email.com", "A tribo"), lateLoan(2L, "a@email.com", "Duna")));
+
+        service.onLoansDue(new LoansDueEvent(asList(1L, 2L)));
+
+        ArgumentCaptor<Map<String, String>> digests = ArgumentCaptor.forClass(Map.class);
+        verify(emailService).sendMails(digests.capture());
+        assertThat(digests.getValue()).containsOnlyKeys("a@email.com");
+        assertThat(digests.getValue().get("a@email.com")).contains("A tribo", "Duna");
+        verify(loanService, never()).markNotified(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Deve limitar o resumo ao tamanho do corpo do e-mail quando os títulos forem longos.")
+    @SuppressWarnings("unchecked")
+    public void truncateLongDigestTest() {
+        List<Long> ids = LongStream.rangeClosed(1, 40).boxed().collect(Collectors.toList());
+        String longTitle = "A tribo ".repeat(30);
+        when(loanService.claimLoansToRemind(eq(ids), startsWith("node-1:"), eq(now()), eq(now().plusDays(7)))).thenReturn(ids.stream()
+                .map(id -> lateLoan(id, "a@email.com", longTitle + id))
+                .collect(Collectors.toList()));
+
+        service.onLoansDue(new LoansDueEvent(ids));
+
+        ArgumentCaptor<Map<String, String>> digests = ArgumentCaptor.forClass(Map.class);
+        verify(emailService).sendMails(digests.capture());
+        String digest = digests.getValue().get("a@email.com");
+        assertThat(digest.length()).isLessThanOrEqualTo(OutboxMail.BODY_LENGTH);
+        assertThat(digest)
+                .startsWith(MESSAGE)
+                .contains(longTitle + 1)
+                .doesNotContain(longTitle + 40)
+                .containsPattern("\\.\\.\\. e mais \\d+ livros\\.$");
+    }
+
+    @Test
+    @DisplayName("Não deve executar o job quando outro nó detém o lock.")
+    public void skipWhenLockedByAnotherNodeTest() {
+        when(jobLockService.tryLock(anyString(), any())).thenReturn(false);
+
+        service.sendMailToLateLoans();
+
+        verify(checkpointRepository, never()).save(any());
+        verify(loanService, never()).getCustomersToNotifyAfter(any(), any(), any(), anyString(), any(), anyInt());
+        verify(jobLockService, never()).unlock(anyString());
+    }
+
+    @Test
+    @DisplayName("Deve interromper a execução quando perder o lock para outro nó.")
+    public void stopWhenLeaseIsLostTest() {
+        this.service = newService(false, 30);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(jobLockService.renew(anyString(), any())).thenReturn(false);
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(asList(lateCustomer("a@email.com", 1), lateCustomer("b@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, asList("a@email.com", "b@email.com"))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return emptyList();
+        });
+
+        service.sendMailToLateLoans();
+
+        verify(loanService, never()).getCustomersToNotifyAfter(any(), any(), any(), eq("b@email.com"), any(), anyInt());
+        verify(checkpointRepository, never()).save(argThat(checkpoint -> checkpoint.getStatus() == JobStatus.COMPLETED));
+        verify(jobLockService).unlock("lateLoans");
+    }
+
+    @Test
+    @DisplayName("Deve dividir a execução em partições de clientes e processar as partições reivindicadas.")
+    @SuppressWarnings("unchecked")
+    public void planAndProcessPartitionsTest() {
+        this.service = newService(true);
+        JobCheckpoint[] saved = new JobCheckpoint[1];
+        when(checkpointRepository.save(any(JobCheckpoint.class))).thenAnswer(invocation -> saved[0] = invocation.getArgument(0));
+        when(checkpointRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(saved[0]));
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(asList(lateCustomer("a@email.com", 1), lateCustomer("b@email.com", 1)));
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "b@email.com", null, 2))
+                .thenReturn(singletonList(lateCustomer("c@email.com", 1)));
+
+        JobPartition partition = JobPartition.builder().id(1L).lowerKey("b@email.com").lastKey("b@email.com").build();
+        when(partitionRepository.findClaimableIds(eq("lateLoans"), eq(now()), any(), any()))
+                .thenReturn(singletonList(1L), emptyList());
+        when(partitionRepository.claim(eq(1L), eq("node-1"), any(), any())).thenReturn(1);
+        when(partitionRepository.findById(1L)).thenReturn(Optional.of(partition));
+        when(partitionRepository.saveProgress(eq(1L), eq("node-1"), anyString(), any(), any(), any())).thenReturn(1);
+        when(partitionRepository.existsByJobNameAndRunDate("lateLoans", now())).thenReturn(false, true);
+        when(partitionRepository.countByJobNameAndRunDateAndStatusNot("lateLoans", now(), JobStatus.COMPLETED)).thenReturn(0L);
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, singletonList("c@email.com")))
+                .thenReturn(singletonList(lateLoan(3L, "c@email.com", "Duna")));
+
+        service.sendMailToLateLoans();
+
+        ArgumentCaptor<List<JobPartition>> partitions = ArgumentCaptor.forClass(List.class);
+        verify(partitionRepository).saveAll(partitions.capture());
+        assertThat(partitions.getValue()).extracting(JobPartition::getLowerKey).containsExactly("", "b@email.com");
+        assertThat(partitions.getValue()).extracting(JobPartition::getUpperKey).containsExactly("b@email.com", null);
+        verify(emailService).sendMails(argThat((Map<String, String> digests) -> digests.containsKey("c@email.com")));
+        verify(partitionRepository).saveProgress(eq(1L), eq("node-1"), eq("c@email.com"), eq(JobStatus.COMPLETED), any(), any());
+        assertThat(saved[0].getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(saved[0].getWatermark()).isEqualTo(DUE_BEFORE);
+    }
+
+    @Test
+    @DisplayName("Deve renovar a reserva da partição em outra thread enquanto um lote demora e parar ao perdê-la.")
+    public void renewPartitionLeaseDuringSlowChunkTest() {
+        this.service = newService(true, 30);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(JobCheckpoint.builder()
+                .jobName("lateLoans").runDate(now()).watermark(FIRST_WATERMARK).status(JobStatus.RUNNING).build()));
+        when(partitionRepository.findClaimableIds(eq("lateLoans"), eq(now()), any(), any()))
+                .thenReturn(singletonList(1L), emptyList());
+        when(partitionRepository.claim(eq(1L), eq("node-1"), any(), any())).thenReturn(1);
+        when(partitionRepository.findById(1L)).thenReturn(Optional.of(
+                JobPartition.builder().id(1L).lowerKey("").lastKey("").build()));
+        when(partitionRepository.saveProgress(eq(1L), eq("node-1"), anyString(), any(), any(), any())).thenReturn(1);
+        when(partitionRepository.renew(eq(1L), eq("node-1"), any(), any())).thenReturn(1, 0);
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(asList(lateCustomer("a@email.com", 1), lateCustomer("b@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, asList("a@email.com", "b@email.com"))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return emptyList();
+        });
+
+        service.pollPartitions();
+
+        verify(partitionRepository, atLeast(2)).renew(eq(1L), eq("node-1"), any(), any());
+        verify(partitionRepository, never()).saveProgress(eq(1L), eq("node-1"), anyString(), any(), any(), any());
+        verify(loanService, never()).getCustomersToNotifyAfter(any(), any(), any(), eq("b@email.com"), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Deve renovar o lock do job enquanto um lote lento é processado.")
+    public void renewJobLockDuringSlowChunkTest() {
+        this.service = newService(false, 30);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(singletonList(lateCustomer("a@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, singletonList("a@email.com"))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return emptyList();
+        });
+
+        service.sendMailToLateLoans();
+
+        verify(jobLockService, atLeast(2)).renew("lateLoans", Duration.ofMillis(30));
+        verify(checkpointRepository, atLeastOnce()).save(argThat(checkpoint -> checkpoint.getStatus() == JobStatus.COMPLETED));
+        verify(jobLockService).unlock("lateLoans");
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar os e-mails, marcar os empréstimos e salvar o checkpoint do lote na mesma transação.")
+    public void commitChunkInOneTransactionTest() {
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(singletonList(lateCustomer("a@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, singletonList("a@email.com")))
+                .thenReturn(singletonList(lateLoan(1L, "a@email.com", "A tribo")));
+
+        service.sendMailToLateLoans();
+
+        InOrder inOrder = inOrder(transactionManager, emailService, loanService, checkpointRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(emailService).sendMails(anyMap());
+        inOrder.verify(loanService).markNotified(singletonList(1L), now(), now().plusDays(7));
+        inOrder.verify(checkpointRepository).save(any(JobCheckpoint.class));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("Deve desfazer o lote inteiro quando a marcação dos empréstimos falhar.")
+    public void rollbackChunkWhenMarkNotifiedFailsTest() {
+        JobCheckpoint checkpoint = JobCheckpoint.builder()
+                .jobName("lateLoans").runDate(now()).lastKey("").watermark(WATERMARK).status(JobStatus.RUNNING).build();
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+        when(loanService.getCustomersToNotifyAfter(WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(singletonList(lateCustomer("a@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, singletonList("a@email.com")))
+                .thenReturn(singletonList(lateLoan(1L, "a@email.com", "A tribo")));
+        doThrow(new IllegalStateException("falha")).when(loanService).markNotified(any(), any(), any());
+
+        assertThatThrownBy(() -> service.resumeLateLoans()).isInstanceOf(IllegalStateException.class);
+
+        verify(emailService).sendMails(anyMap());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(checkpointRepository, never()).save(any(JobCheckpoint.class));
+        assertThat(checkpoint.getLastKey()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve desfazer o lote quando o lease do job for perdido antes de salvar o checkpoint.")
+    public void rollbackChunkWhenLeaseIsLostTest() {
+        this.service = newService(false, 30);
+        when(jobLockService.renew(anyString(), any())).thenReturn(false);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(loanService.getCustomersToNotifyAfter(FIRST_WATERMARK, DUE_BEFORE, now(), "", null, 2))
+                .thenReturn(singletonList(lateCustomer("a@email.com", 1)));
+        when(loanService.getLateLoansByCustomers(DUE_BEFORE, singletonList("a@email.com"))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return singletonList(lateLoan(1L, "a@email.com", "A tribo"));
+        });
+
+        service.sendMailToLateLoans();
+
+        ArgumentCaptor<TransactionStatus> status = ArgumentCaptor.forClass(TransactionStatus.class);
+        verify(transactionManager).commit(status.capture());
+        assertThat(status.getValue().isRollbackOnly()).isTrue();
+        verify(checkpointRepository, never()).save(argThat(checkpoint -> "a@email.com".equals(checkpoint.getLastKey())));
+    }
+
+    private ScheduleService newService(boolean partitioned) {
+        return newService(partitioned, 60000);
+    }
+
+    private ScheduleService newService(boolean partitioned, long lease) {
+        return new ScheduleService(MESSAGE, 2, 7, partitioned, 2, lease,
+                loanService, emailService, checkpointRepository, partitionRepository, jobLockService,
+                new LibraryMetrics(new SimpleMeterRegistry()), new TransactionTemplate(transactionManager));
+    }
+
+    private static JobCheckpoint argThatCheckpoint(String lastKey, JobStatus status) {
+        return argThat(checkpoint -> lastKey.equals(checkpoint.getLastKey()) && checkpoint.getStatus() == status);
+    }
+
+    private static LateCustomerDTO lateCustomer(String email, long lateLoans) {
+        return LateCustomerDTO.builder().email(email).customer("Cláudio").lateLoans(lateLoans).build();
+    }
+
+    private static LateLoanDTO lateLoan(Long id, String email, String title) {
+        return LateLoanDTO.builder().id(id).customer("Cláudio").email(email).isbn("001").title(title).build();
+    }
+}